@@ -0,0 +1,60 @@
+package gna;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Runs SolverBenchmark with the GC profiler and divides the bytes allocated per operation by the number of boards
+ * an operation expands. Arguments are the heuristics to measure (default: all of SolverBenchmark); set the system
+ * property board to measure a single board.
+ * Run with: ant bench-alloc
+ */
+public class AllocationReport {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String board = System.getProperty("board", "all");
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(SolverBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .param("board", board)
+                .warmupIterations(1)
+                .measurementIterations(2);
+        if (args.length > 0)
+            options.param("heuristic", args);
+
+        Collection<RunResult> runs = new Runner(options.build()).run();
+        System.out.println();
+        System.out.printf("%-10s %-14s %14s %14s %10s%n", "heuristic", "board", "bytes/op", "nodes/op", "bytes/node");
+        for (RunResult run : runs) {
+            SolverBenchmark benchmark = new SolverBenchmark();
+            benchmark.heuristic = run.getParams().getParam("heuristic");
+            benchmark.board = run.getParams().getParam("board");
+            benchmark.mode = run.getParams().getParam("mode");
+            benchmark.directory = run.getParams().getParam("directory");
+            benchmark.setup();
+            long nodes = benchmark.nodesExpanded();
+            double bytes = allocatedBytes(run.getSecondaryResults());
+            System.out.printf("%-10s %-14s %14.0f %14d %10.1f%n",
+                    benchmark.heuristic, benchmark.board, bytes, nodes, bytes / nodes);
+        }
+    }
+
+    // the name of the normalized allocation rate differs between JMH versions ("gc.alloc.rate.norm" or with a prefix).
+    // JMH declares the results with the raw type Result, so they are taken as Object and cast one by one.
+    private static double allocatedBytes(Map<String, ?> results) {
+        for (Map.Entry<String, ?> result : results.entrySet()) {
+            if (result.getKey().endsWith("gc.alloc.rate.norm"))
+                return ((Result<?>) result.getValue()).getScore();
+        }
+        throw new IllegalStateException("GC profiler did not report the allocation rate");
+    }
+}
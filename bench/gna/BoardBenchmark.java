@@ -0,0 +1,72 @@
+package gna;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the Board operations every expanded node goes through, on a board of each size
+ * scrambled by BoardGenerator.walk().
+ * Run with: ant bench -Dbench.args=BoardBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoardBenchmark {
+
+    @Param({"3", "4", "10", "100"})
+    public int size;
+
+    private Board board;
+    private Board copy;
+
+    @Setup
+    public void setup() {
+        board = new BoardGenerator(42).walk(size, 10 * size * size);
+        copy = new Board(board.getTiles());     // equal, but sharing no arrays with board
+    }
+
+    @Benchmark
+    public Object neighbors() {
+        return board.neighbors();
+    }
+
+    // the expansion step of the searches: one Board per move, no list
+    @Benchmark
+    public void expand(Blackhole blackhole) {
+        for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+            int to = board.successorIndex(direction);
+            if (to >= 0)
+                blackhole.consume(board.successor(to));
+        }
+    }
+
+    @Benchmark
+    public int hamming() {
+        return board.hamming();
+    }
+
+    @Benchmark
+    public int manhattan() {
+        return board.manhattan();
+    }
+
+    @Benchmark
+    public boolean isSolvable() {
+        return board.isSolvable();
+    }
+
+    @Benchmark
+    public boolean equalBoards() {
+        return board.equals(copy);
+    }
+
+    @Benchmark
+    public int hashCodeOfBoard() {
+        return board.hashCode();
+    }
+}
@@ -0,0 +1,91 @@
+package gna;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Macrobenchmarks: solves the boards in boards/ with one heuristic per run. By default every board of a size the
+ * heuristic supports is solved in one operation; a single file is selected with -p board=puzzle42.txt. Another
+ * directory, such as a corpus written by BoardGenerator, is used with -p directory=corpus; a file may hold many boards.
+ * Hamming is left out of the defaults as it takes minutes on the 4x4 boards (-p heuristic=hamming).
+ * Run with: ant bench -Dbench.args=SolverBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+
+    @Param({"boards"})
+    public String directory;
+
+    @Param({"manhattan", "linear", "walking", "pdb"})
+    public String heuristic;
+
+    @Param({"all"})
+    public String board;
+
+    @Param({"A_STAR"})
+    public String mode;
+
+    private final List<Board> boards = new ArrayList<Board>();
+    private final List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    private SearchMode searchMode;
+
+    @Setup
+    public void setup() throws IOException {
+        searchMode = SearchMode.valueOf(mode);
+        File[] files = board.equals("all")
+                ? new File(directory).listFiles((dir, name) -> name.endsWith(".txt"))
+                : new File[]{new File(directory, board)};
+        if (files == null)
+            throw new FileNotFoundException(directory);
+        Arrays.sort(files);
+        for (File file : files) {
+            try (BoardReader reader = new BoardReader(new FileInputStream(file))) {
+                for (Board initial = reader.next(); initial != null; initial = reader.next()) {
+                    if (initial.isSolvable())
+                        add(initial);
+                }
+            }
+        }
+        if (boards.isEmpty())
+            throw new IllegalStateException("No boards in " + directory + " for heuristic " + heuristic);
+    }
+
+    private void add(Board initial) {
+        try {
+            heuristics.add(BatchSolver.createHeuristic(heuristic, initial.getSize()));
+            boards.add(initial);
+        } catch (IllegalArgumentException e) {
+            // this heuristic does not support boards of this size
+        }
+    }
+
+    // total number of moves of the solutions
+    @Benchmark
+    public int solve() {
+        int moves = 0;
+        for (int i = 0; i < boards.size(); i++)
+            moves += new Solver(boards.get(i), heuristics.get(i), searchMode).moveCount();
+        return moves;
+    }
+
+    // total number of boards one operation expands
+    long nodesExpanded() {
+        long nodes = 0;
+        for (int i = 0; i < boards.size(); i++)
+            nodes += new Solver(boards.get(i), heuristics.get(i), searchMode).getNodesExpanded();
+        return nodes;
+    }
+}
@@ -0,0 +1,182 @@
+package gna;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Anytime repairing A* (ARA*): a series of weighted A* searches with priority f = moves + w * h, which find a
+ * solution of at most w times the shortest length. The first search with a high w finds a solution quickly; every
+ * next one lowers w and goes on from the boards the previous one left on its open list instead of starting over, until
+ * w = 1 and the solution is the shortest.
+ * <p>
+ * A board that is reached with fewer moves after it was expanded in the current search is not expanded again in that
+ * search, but kept aside and put back on the open list for the next one. As boards are immutable, a shorter path to
+ * a state is a new Board node that replaces the old one in the map of best nodes.
+ * <p>
+ * After every search the proven bound on the suboptimality is the length of the solution divided by the lowest
+ * moves + h of the boards not expanded yet, or w if that is lower. Boards whose moves + h is not below the length of
+ * the solution cannot lead to a better one and are dropped.
+ */
+final class AnytimeSearch {
+
+    static final double INITIAL_WEIGHT = 3.0;
+    private static final int SCALE = 10;        // weights are multiples of 1 / SCALE, so priorities stay integers
+    private static final int WEIGHT_STEP = 2;   // decrease of w * SCALE after every search
+
+    private final Heuristic heuristic;
+    private final SearchStats stats;
+    private final SearchListener listener;
+    private final SearchLimits limits;
+    private int weight;                         // w * SCALE
+
+    private BucketQueue queue = new BucketQueue();
+    private final Map<Board, Board> bestBoards = new HashMap<Board, Board>();    // board state -> node with least moves
+    private final Set<Board> closed = new HashSet<Board>();                     // expanded in the current search
+    private final List<Board> inconsistent = new ArrayList<Board>();            // improved after they were expanded
+    private Board goal;                         // goal node of the best solution so far
+    private double bound = Double.POSITIVE_INFINITY;
+    private SearchOutcome outcome = SearchOutcome.SOLVED;
+    private Board closestBoard;                 // expanded board with the lowest h, while there is no solution yet
+    private int closestPriority = Integer.MAX_VALUE;
+
+    AnytimeSearch(Heuristic heuristic, double initialWeight, SearchStats stats, SearchListener listener, SearchLimits limits) {
+        if (initialWeight < 1)
+            throw new IllegalArgumentException("Weight must be at least 1");
+        this.heuristic = heuristic;
+        this.weight = (int) Math.round(initialWeight * SCALE);
+        this.stats = stats;
+        this.listener = listener;
+        this.limits = limits;
+    }
+
+    // returns the goal board of the best solution found, linked to initial through its previous boards. When a limit
+    // is reached before the first solution it returns the closest board to the goal that was expanded.
+    Board search(Board initial) {
+        Board root = initial.copy();
+        root.setHeuristicState(heuristic.evaluate(root));
+        bestBoards.put(root, root);
+        if (root.isGoal())
+            goal = root;
+        add(root);
+
+        while (true) {
+            if (!improveSolution())
+                return goal != null ? goal : closestBoard;
+
+            // the boards left for the next search; their lowest moves + h is a lower bound on the shortest solution
+            List<Board> open = new ArrayList<Board>();
+            for (Board board = queue.poll(); board != null; board = queue.poll()) {
+                if (bestBoards.get(board) == board && canImprove(board))
+                    open.add(board);
+            }
+            for (Board board : inconsistent) {
+                if (bestBoards.get(board) == board && canImprove(board))
+                    open.add(board);
+            }
+            inconsistent.clear();
+            if (goal == null)
+                throw new IllegalArgumentException("Board is not solvable");
+            int lowerBound = goal.getMoves();
+            for (Board board : open)
+                lowerBound = Math.min(lowerBound, board.getMoves() + heuristic.value(board.getHeuristicState()));
+            if (stats.bound(lowerBound) && listener != null)
+                listener.boundRaised(lowerBound, stats);
+            bound = lowerBound == 0 ? 1 : Math.min((double) weight / SCALE, (double) goal.getMoves() / lowerBound);
+            if (listener != null)
+                listener.solutionImproved(Solver.path(goal), bound, stats);
+            if (bound <= 1)
+                return goal;
+
+            // lower w by 0.2, and never search with a weight above the proven bound
+            weight = Math.max(SCALE, Math.min(weight - WEIGHT_STEP, (int) (bound * SCALE)));
+            queue = new BucketQueue();
+            closed.clear();
+            for (Board board : open)
+                add(board);
+        }
+    }
+
+    SearchOutcome getOutcome() {
+        return outcome;
+    }
+
+    // the proven bound on the length of the solution divided by the shortest length, infinite without a solution
+    double getBound() {
+        return bound;
+    }
+
+    // false if every solution through board is at least as long as the best one so far
+    private boolean canImprove(Board board) {
+        return goal == null || board.getMoves() + heuristic.value(board.getHeuristicState()) < goal.getMoves();
+    }
+
+    private void add(Board board) {
+        int h = heuristic.value(board.getHeuristicState());
+        queue.add(board, SCALE * board.getMoves() + weight * h, h);
+    }
+
+    // one weighted A* search, until no board on the open list can lead to a solution within the weight of the
+    // current one. Returns false if a limit was reached.
+    private boolean improveSolution() {
+        while (!queue.isEmpty() && (goal == null || SCALE * goal.getMoves() > queue.minPriority())) {
+            Board board = queue.poll();
+            if (bestBoards.get(board) != board || !canImprove(board)) {
+                stats.pruned();
+                continue;
+            }
+            closed.add(board);
+            if (stats.expanded() && listener != null)
+                listener.progress(stats);
+            if (limits != null) {
+                int h = heuristic.value(board.getHeuristicState());
+                if (h < closestPriority) {
+                    closestPriority = h;
+                    closestBoard = board;
+                }
+                SearchOutcome limit = limits.check(stats.getNodesExpanded(), stats);
+                if (limit != null) {
+                    outcome = limit;
+                    return false;
+                }
+            }
+            expand(board);
+        }
+        return true;
+    }
+
+    private void expand(Board board) {
+        int zero = board.getZeroIndex();
+        int state = board.getHeuristicState();
+        for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+            int from = board.successorIndex(direction);
+            if (from < 0)
+                continue;
+            Board neighbor = board.successor(from);
+            stats.generated(1);
+            Board known = bestBoards.get(neighbor);
+            if (known != null && known.getMoves() <= board.getMoves() + 1) {
+                stats.pruned();
+                continue;
+            }
+            long start = listener == null ? 0 : System.nanoTime();
+            neighbor.setHeuristicState(heuristic.update(neighbor, state, neighbor.getTile(zero), from, zero));
+            if (listener != null)
+                stats.heuristicTime(System.nanoTime() - start);
+            bestBoards.put(neighbor, neighbor);
+            if (heuristic.value(neighbor.getHeuristicState()) == 0 && neighbor.isGoal())
+                goal = neighbor;
+            if (!canImprove(neighbor))
+                continue;
+            if (closed.contains(neighbor))
+                inconsistent.add(neighbor);
+            else
+                add(neighbor);
+        }
+        stats.openListSize(queue.size());
+        stats.retainedBoards(bestBoards.size());
+    }
+}
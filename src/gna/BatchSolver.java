@@ -0,0 +1,329 @@
+package gna;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Solves many boards concurrently on a work-stealing pool and prints every result as soon as it is found.
+ * <p>
+ * Usage: java gna.BatchSolver [-threads n] [-heuristic hamming|manhattan|linear|walking|pdb]
+ * [-mode A_STAR|IDA_STAR|PARALLEL_A_STAR|BIDIRECTIONAL_A_STAR|ANYTIME_A_STAR] [-timeout seconds] [-max-nodes n]
+ * [-cache file] [-solutions file] input
+ * <p>
+ * input is a directory, of which every .txt file holds one board (like boards/), or a file holding any number of
+ * boards one after the other in the same format (see BoardReader); "-" reads such a stream from standard input.
+ * A file written by BinaryBoardWriter is read as such.
+ * A board that exceeds the timeout or the maximum number of expanded boards is reported as stopped, with the number
+ * of moves to the closest board to the goal that was found.
+ * With -cache the solutions are shared between the boards through a SolutionCache, which is read from the file at
+ * the start (if it exists) and written back at the end. With -solutions every solved board is written to the file
+ * with its solution, in the format of BinaryBoardWriter.
+ */
+class BatchSolver {
+
+    private static final int CACHE_CAPACITY = 1 << 20;     // board states in the -cache file
+
+    private final ExecutorService pool;
+    private final CompletionService<Result> completion;
+    private final int maxInFlight;
+    private final String heuristicName;
+    private final SearchMode mode;
+    private long timeoutMillis = Long.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    private SolutionCache cache;
+    private BinaryBoardWriter solutions;        // null if the solutions are not written
+    private final Map<Integer, Heuristic> heuristics = new ConcurrentHashMap<>();
+    private final PrintStream out;
+
+    private int inFlight = 0;
+    private int solved = 0;
+    private int unsolvable = 0;
+    private int stopped = 0;
+    private int failed = 0;
+    private long totalSolveNanos = 0;
+
+    BatchSolver(int threads, String heuristicName, SearchMode mode, PrintStream out) {
+        this.pool = new ForkJoinPool(threads);
+        this.completion = new ExecutorCompletionService<>(pool);
+        // keep a few boards queued per thread, so a long stream is not read into memory all at once
+        this.maxInFlight = 4 * threads;
+        this.heuristicName = heuristicName;
+        this.mode = mode;
+        this.out = out;
+    }
+
+    // bound the search of every board
+    void setLimits(long timeoutMillis, long maxNodes) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    // share the solutions of all boards
+    void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    // write every solved board with its solution
+    void setSolutions(BinaryBoardWriter solutions) {
+        this.solutions = solutions;
+    }
+
+    // result of solving one board
+    private static class Result {
+        final String name;
+        final int moves;            // -1 when the board is not solvable
+        final long nanos;
+        final Throwable error;
+        final SearchOutcome outcome;
+        final int remaining;        // estimate of the moves left when a limit was reached
+        Board board;                // with -solutions: the solved board
+        String solution;            // and the moves that solve it
+
+        Result(String name, int moves, long nanos, Throwable error) {
+            this(name, moves, nanos, error, SearchOutcome.SOLVED, 0);
+        }
+
+        Result(String name, int moves, long nanos, Throwable error, SearchOutcome outcome, int remaining) {
+            this.name = name;
+            this.moves = moves;
+            this.nanos = nanos;
+            this.error = error;
+            this.outcome = outcome;
+            this.remaining = remaining;
+        }
+    }
+
+    // queue board for solving, printing results that are done while waiting for room in the pool
+    void submit(String name, Board board) throws InterruptedException, IOException {
+        while (inFlight >= maxInFlight)
+            report(completion.take());
+        completion.submit(() -> solve(name, board));
+        inFlight++;
+    }
+
+    // wait for all queued boards and print the summary
+    void finish(long startTime) throws InterruptedException, IOException {
+        while (inFlight > 0)
+            report(completion.take());
+        pool.shutdown();
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        int total = solved + unsolvable + stopped + failed;
+        out.printf("%d boards (%d solved, %d not solvable, %d stopped, %d failed) in %.3f s: %.1f boards/s, "
+                        + "%.3f s solving in total (%.1f ms per board)%n",
+                total, solved, unsolvable, stopped, failed, elapsed, total / elapsed,
+                totalSolveNanos / 1e9, total == 0 ? 0 : totalSolveNanos / 1e6 / total);
+        if (cache != null)
+            out.printf("cache: %d hits, %d misses, %d states%n", cache.getHits(), cache.getMisses(), cache.size());
+    }
+
+    // input that could not be read as a board counts as a failed board
+    void failed(String name, IOException e) {
+        failed++;
+        out.printf("%s: failed (%s)%n", name, e.getMessage());
+    }
+
+    private Result solve(String name, Board board) {
+        long startTime = System.nanoTime();
+        try {
+            if (!board.isSolvable())
+                return new Result(name, -1, System.nanoTime() - startTime, null);
+            SearchLimits limits = new SearchLimits()
+                    .setTimeLimit(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .setMaxNodesExpanded(maxNodes);
+            Solver solver = new Solver(board, heuristic(board.getSize()), mode,
+                    new SearchOptions().setLimits(limits).setCache(cache));
+            Result result = new Result(name, solver.moveCount(), System.nanoTime() - startTime, null,
+                    solver.getOutcome(), solver.getRemainingEstimate());
+            if (solutions != null && result.outcome == SearchOutcome.SOLVED) {
+                result.board = board;
+                result.solution = solver.moves();
+            }
+            return result;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            return new Result(name, -1, System.nanoTime() - startTime, e);
+        }
+    }
+
+    private void report(Future<Result> future) throws InterruptedException, IOException {
+        inFlight--;
+        Result result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        totalSolveNanos += result.nanos;
+        if (result.error != null) {
+            failed++;
+            out.printf("%s: failed (%s) after %.3f ms%n", result.name, result.error, result.nanos / 1e6);
+        } else if (result.moves < 0) {
+            unsolvable++;
+            out.printf("%s: No solution possible (%.3f ms)%n", result.name, result.nanos / 1e6);
+        } else if (result.outcome != SearchOutcome.SOLVED) {
+            stopped++;
+            out.printf("%s: stopped (%s) after %.3f ms, %d moves to a board with priority %d%n",
+                    result.name, result.outcome, result.nanos / 1e6, result.moves, result.remaining);
+        } else {
+            solved++;
+            out.printf("%s: %d moves in %.3f ms%n", result.name, result.moves, result.nanos / 1e6);
+            if (result.board != null)
+                solutions.write(result.board, result.solution);
+        }
+    }
+
+    // heuristics are shared between the threads, one per board size
+    private Heuristic heuristic(int N) {
+        return heuristics.computeIfAbsent(N, size -> createHeuristic(heuristicName, size));
+    }
+
+    // heuristic for N-by-N boards by its command line name; IllegalArgumentException if it does not support N
+    static Heuristic createHeuristic(String name, int N) {
+        switch (name) {
+            case "hamming":
+                return new HammingHeuristic();
+            case "manhattan":
+                return new ManhattanHeuristic();
+            case "linear":
+                return new LinearConflictHeuristic();
+            case "walking":
+                return new WalkingDistanceHeuristic(N);
+            case "pdb":
+                try {
+                    return PatternDatabase.loadOrBuild(Paths.get("pdb", "puzzle" + N + "x" + N + ".pdb"), N);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown heuristic " + name);
+        }
+    }
+
+    // submits the boards of a text stream, see BoardReader. Boards are named after the stream, numbered when the
+    // stream may hold more than one. A board that cannot be read is reported as failed, and ends the stream.
+    private static void readBoards(InputStream in, BatchSolver batch, String name, boolean numbered) throws IOException, InterruptedException {
+        BoardReader reader = new BoardReader(in);
+        while (true) {
+            Board board;
+            try {
+                board = reader.next();
+            } catch (IOException e) {
+                batch.failed(name, e);
+                return;
+            }
+            if (board == null)
+                return;
+            int count = reader.getCount();
+            String boardName = numbered || count > 1 ? name + "#" + count : name;
+            // a description such as the difficulty that BoardGenerator writes goes with the name
+            String comment = reader.getComment();
+            batch.submit(comment == null ? boardName : boardName + " [" + comment.replace('\n', ' ') + "]", board);
+        }
+    }
+
+    // submits the boards of a file written by BinaryBoardWriter, numbered after the file. Like readBoards, a board
+    // that cannot be read is reported as failed.
+    private static void readBinaryBoards(Path file, BatchSolver batch) throws IOException, InterruptedException {
+        String name = file.getFileName().toString();
+        try (BinaryBoardReader reader = new BinaryBoardReader(Files.newByteChannel(file))) {
+            for (int count = 1; ; count++) {
+                Board board;
+                try {
+                    board = reader.next();
+                } catch (IOException e) {
+                    batch.failed(name, e);
+                    return;
+                }
+                if (board == null)
+                    return;
+                batch.submit(name + "#" + count, board);
+            }
+        }
+    }
+
+    // does file start with the header of BinaryBoardWriter?
+    private static boolean isBinary(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == BinaryBoardWriter.MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String heuristic = "manhattan";
+        SearchMode mode = SearchMode.A_STAR;
+        long timeoutMillis = Long.MAX_VALUE;
+        long maxNodes = Long.MAX_VALUE;
+        Path cacheFile = null;
+        Path solutionsFile = null;
+        int i = 0;
+        for (; i < args.length - 1; i += 2) {
+            if (args[i].equals("-threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-heuristic"))
+                heuristic = args[i + 1];
+            else if (args[i].equals("-mode"))
+                mode = SearchMode.valueOf(args[i + 1]);
+            else if (args[i].equals("-timeout"))
+                timeoutMillis = (long) (Double.parseDouble(args[i + 1]) * 1000);
+            else if (args[i].equals("-max-nodes"))
+                maxNodes = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("-cache"))
+                cacheFile = Paths.get(args[i + 1]);
+            else if (args[i].equals("-solutions"))
+                solutionsFile = Paths.get(args[i + 1]);
+            else
+                break;
+        }
+        if (i != args.length - 1) {
+            System.err.println("Usage: java gna.BatchSolver [-threads n] [-heuristic hamming|manhattan|linear|walking|pdb] "
+                    + "[-mode A_STAR|IDA_STAR|PARALLEL_A_STAR|BIDIRECTIONAL_A_STAR|ANYTIME_A_STAR] [-timeout seconds] "
+                    + "[-max-nodes n] [-cache file] [-solutions file] directory|file|-");
+            System.exit(1);
+        }
+        if (mode == SearchMode.BIDIRECTIONAL_A_STAR && (heuristic.equals("walking") || heuristic.equals("pdb"))) {
+            System.err.println("BIDIRECTIONAL_A_STAR needs a heuristic towards the initial board: hamming, manhattan "
+                    + "or linear, not " + heuristic);
+            System.exit(1);
+        }
+
+        BatchSolver batch = new BatchSolver(threads, heuristic, mode, System.out);
+        batch.setLimits(timeoutMillis, maxNodes);
+        if (cacheFile != null)
+            batch.setCache(SolutionCache.loadIfExists(cacheFile, CACHE_CAPACITY));
+        if (solutionsFile != null)
+            batch.setSolutions(new BinaryBoardWriter(Files.newByteChannel(solutionsFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+        long startTime = System.nanoTime();
+        String input = args[i];
+        if (input.equals("-")) {
+            readBoards(System.in, batch, "stdin", true);
+        } else if (Files.isDirectory(Paths.get(input))) {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get(input), "*.txt")) {
+                for (Path file : directory)
+                    files.add(file);
+            }
+            Collections.sort(files);
+            for (Path file : files) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    readBoards(in, batch, file.getFileName().toString(), false);
+                }
+            }
+        } else if (isBinary(Paths.get(input))) {
+            readBinaryBoards(Paths.get(input), batch);
+        } else {
+            try (InputStream in = Files.newInputStream(Paths.get(input))) {
+                readBoards(in, batch, Paths.get(input).getFileName().toString(), true);
+            }
+        }
+        batch.finish(startTime);
+        if (solutionsFile != null)
+            batch.solutions.close();
+        if (cacheFile != null)
+            batch.cache.save(cacheFile);
+    }
+}
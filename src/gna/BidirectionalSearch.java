@@ -0,0 +1,211 @@
+package gna;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bidirectional A*: one search runs forwards from the initial board towards the goal, the other backwards from the
+ * goal towards the initial board, guided by the same kind of heuristic with the initial board as its target (see
+ * Heuristic.towards()); heuristics that only work towards the goal are rejected. Every move can be undone,
+ * so a path found backwards is a solution read in reverse.
+ * <p>
+ * Each time a search generates a state the other search already reached, the two half-paths form a solution; the
+ * shortest one found so far is kept. Boards are expanded meet-in-the-middle style, by the priority max(f, 2g) with
+ * g the number of moves and f = g + h, so that neither search gets far past the middle of a solution. A shorter
+ * solution would pass through a board left on each open list, so none remains once the best length is at most the
+ * lowest priority, the lowest f of either open list or the lowest g of both added up plus the move between them.
+ * The search whose open list has the lowest priority is expanded next, the forward one on a tie.
+ */
+final class BidirectionalSearch {
+
+    private static final int FORWARD = 0;
+    private static final int BACKWARD = 1;
+
+    private final Heuristic[] heuristics = new Heuristic[2];
+    private final BucketQueue[] queues = {new BucketQueue(), new BucketQueue()};
+    // f = moves + h and g = moves of the boards on each open list, for their minimum
+    private final MinCounter[] fValues = {new MinCounter(), new MinCounter()};
+    private final MinCounter[] gValues = {new MinCounter(), new MinCounter()};
+    private final Map<Board, Board> forwardBoards = new HashMap<Board, Board>();
+    private final Map<Board, Board> backwardBoards = new HashMap<Board, Board>();
+    private int bestMoves = Integer.MAX_VALUE;
+    private Board bestForward;          // meeting state as reached by the forward search
+    private Board bestBackward;         // the same state as reached by the backward search
+    private final SearchStats stats;
+    private final SearchListener listener;
+    private final SearchLimits limits;
+    private SearchOutcome outcome = SearchOutcome.SOLVED;
+    private Board closestBoard;         // with limits: the expanded forward board with the lowest priority
+    private int closestPriority = Integer.MAX_VALUE;
+
+    BidirectionalSearch(Heuristic heuristic, SearchStats stats, SearchListener listener, SearchLimits limits) {
+        heuristics[FORWARD] = heuristic;
+        this.stats = stats;
+        this.listener = listener;
+        this.limits = limits;
+    }
+
+    // returns the goal board of a shortest solution, linked to initial through its previous boards. When a limit is
+    // reached it returns the solution found so far if there is one, otherwise the closest board to the goal.
+    // IllegalArgumentException if the heuristic cannot estimate the moves to initial.
+    Board search(Board initial) {
+        heuristics[BACKWARD] = heuristics[FORWARD].towards(initial);
+        if (heuristics[BACKWARD] == null)
+            throw new IllegalArgumentException("Bidirectional A* needs a heuristic towards the initial board, which "
+                    + heuristics[FORWARD].getClass().getSimpleName() + " does not support");
+        Board root = initial.copy();
+        if (root.isGoal())
+            return root;
+        Board goal = Board.goal(root.getSize());
+        add(FORWARD, root);
+        add(BACKWARD, goal);
+
+        while (!queues[FORWARD].isEmpty() && !queues[BACKWARD].isEmpty()) {
+            int forwardPriority = queues[FORWARD].minPriority();
+            int backwardPriority = queues[BACKWARD].minPriority();
+            int bound = Math.max(Math.max(forwardPriority, backwardPriority),
+                    Math.max(Math.max(fValues[FORWARD].min(), fValues[BACKWARD].min()),
+                            gValues[FORWARD].min() + gValues[BACKWARD].min() + 1));
+            if (bestMoves <= bound)
+                break;
+            if (stats.bound(bound) && listener != null)
+                listener.boundRaised(bound, stats);
+            int direction = forwardPriority <= backwardPriority ? FORWARD : BACKWARD;
+            Board board = queues[direction].poll();
+            int f = board.getMoves() + heuristics[direction].value(board.getHeuristicState());
+            fValues[direction].remove(f);
+            gValues[direction].remove(board.getMoves());
+            if (boards(direction).get(board) != board) {
+                stats.pruned();
+                continue;
+            }
+            if (f >= bestMoves)
+                continue;
+            expand(direction, board);
+            if (limits != null) {
+                SearchOutcome limit = limit(direction, board);
+                if (limit != null) {
+                    outcome = limit;
+                    return bestForward != null ? join(bestForward, bestBackward) : closestBoard;
+                }
+            }
+        }
+        if (bestForward == null)
+            throw new IllegalArgumentException("Board is not solvable");
+        return join(bestForward, bestBackward);
+    }
+
+    SearchOutcome getOutcome() {
+        return outcome;
+    }
+
+    // keeps track of the closest board to the goal, returns the limit that was reached or null to go on
+    private SearchOutcome limit(int direction, Board board) {
+        if (direction == FORWARD) {
+            int h = heuristics[FORWARD].value(board.getHeuristicState());
+            if (h < closestPriority) {
+                closestPriority = h;
+                closestBoard = board;
+            }
+        }
+        return limits.check(stats.getNodesExpanded(), stats);
+    }
+
+    private Map<Board, Board> boards(int direction) {
+        return direction == FORWARD ? forwardBoards : backwardBoards;
+    }
+
+    private void add(int direction, Board root) {
+        long start = listener == null ? 0 : System.nanoTime();
+        root.setHeuristicState(heuristics[direction].evaluate(root));
+        if (listener != null)
+            stats.heuristicTime(System.nanoTime() - start);
+        queue(direction, root);
+        boards(direction).put(root, root);
+    }
+
+    private void expand(int direction, Board board) {
+        if (stats.expanded() && listener != null)
+            listener.progress(stats);
+        Heuristic heuristic = heuristics[direction];
+        Map<Board, Board> bestBoards = boards(direction);
+        Map<Board, Board> otherBoards = boards(1 - direction);
+        int zero = board.getZeroIndex();
+        int state = board.getHeuristicState();
+        for (int move = 0; move < Board.DIRECTIONS; move++) {
+            int from = board.successorIndex(move);
+            if (from < 0)
+                continue;
+            Board neighbor = board.successor(from);
+            stats.generated(1);
+            Board known = bestBoards.get(neighbor);
+            if (known != null && known.getMoves() <= board.getMoves() + 1) {
+                stats.pruned();
+                continue;
+            }
+            long start = listener == null ? 0 : System.nanoTime();
+            neighbor.setHeuristicState(heuristic.update(neighbor, state, neighbor.getTile(zero), from, zero));
+            if (listener != null)
+                stats.heuristicTime(System.nanoTime() - start);
+            bestBoards.put(neighbor, neighbor);
+            queue(direction, neighbor);
+
+            // the other search reached this state too: a solution through it
+            Board other = otherBoards.get(neighbor);
+            if (other != null && neighbor.getMoves() + other.getMoves() < bestMoves) {
+                bestMoves = neighbor.getMoves() + other.getMoves();
+                bestForward = direction == FORWARD ? neighbor : other;
+                bestBackward = direction == FORWARD ? other : neighbor;
+            }
+        }
+        stats.openListSize(queues[FORWARD].size() + queues[BACKWARD].size());
+        stats.retainedBoards(forwardBoards.size() + backwardBoards.size());
+    }
+
+    // adds board to the open list with priority max(f, 2g)
+    private void queue(int direction, Board board) {
+        int g = board.getMoves();
+        int h = heuristics[direction].value(board.getHeuristicState());
+        queues[direction].add(board, Math.max(g + h, 2 * g), h);
+        fValues[direction].add(g + h);
+        gValues[direction].add(g);
+    }
+
+    // continues the forward path with the moves of the backward path in reverse, up to the goal
+    private static Board join(Board forward, Board backward) {
+        Board current = forward;
+        for (Board board = backward.getPreviousBoard(); board != null; board = board.getPreviousBoard())
+            current = current.successor(board.getZeroIndex());
+        return current;
+    }
+
+    // multiset of small non-negative values that tells its minimum in amortized O(1)
+    private static final class MinCounter {
+        private int[] counts = new int[64];
+        private int min = Integer.MAX_VALUE;
+        private int size = 0;
+
+        void add(int value) {
+            if (value >= counts.length)
+                counts = Arrays.copyOf(counts, Math.max(2 * counts.length, value + 1));
+            counts[value]++;
+            min = Math.min(min, value);
+            size++;
+        }
+
+        void remove(int value) {
+            counts[value]--;
+            size--;
+        }
+
+        // the smallest value, or 0 if there is none
+        int min() {
+            if (size == 0)
+                return 0;
+            while (counts[min] == 0)
+                min++;
+            return min;
+        }
+    }
+}
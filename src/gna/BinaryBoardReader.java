@@ -0,0 +1,117 @@
+package gna;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the boards and solutions written by BinaryBoardWriter from a channel.
+ */
+public class BinaryBoardReader implements Closeable {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private String moves;
+    private int count = 0;
+
+    /**
+     * @throws IOException if the channel does not start with the header of BinaryBoardWriter
+     */
+    public BinaryBoardReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.limit(0);
+        if (!fill(Integer.BYTES) || buffer.getInt() != BinaryBoardWriter.MAGIC)
+            throw new IOException("Not a binary board file");
+    }
+
+    /**
+     * Returns the next board, or null at the end of the channel. getMoves() then returns its solution.
+     */
+    public Board next() throws IOException {
+        if (!fill(Short.BYTES)) {
+            if (buffer.hasRemaining())
+                throw new IOException("Board " + (count + 1) + " is truncated");
+            return null;
+        }
+        int N = buffer.getShort() & 0xFFFF;
+        if (N == 0 || N > Board.MAX_SIZE)
+            throw new IOException("Board " + (count + 1) + " has size " + N + ", not 1 to " + Board.MAX_SIZE);
+        int[] tiles = new int[N * N];
+        if (N <= Board.MAX_PACKED_SIZE) {
+            require(Long.BYTES);
+            long packed = buffer.getLong();
+            for (int i = 0; i < tiles.length; i++)
+                tiles[i] = (int) (packed >>> (i << 2)) & 0xF;
+            if (N < Board.MAX_PACKED_SIZE && packed >>> (tiles.length << 2) != 0)
+                throw new IOException("Board " + (count + 1) + " has bits set beyond its tiles");
+        } else {
+            for (int i = 0; i < tiles.length; i++) {
+                if (N * N > 256) {
+                    require(Short.BYTES);
+                    tiles[i] = buffer.getShort() & 0xFFFF;
+                } else {
+                    require(1);
+                    tiles[i] = buffer.get() & 0xFF;
+                }
+            }
+        }
+        // the packed tiles are unpacked too, so that every board goes through the checks of the constructor
+        Board board;
+        try {
+            board = new Board(N, tiles, null);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Board " + (count + 1) + ": " + e.getMessage(), e);
+        }
+        require(Integer.BYTES);
+        int length = buffer.getInt();
+        if (length < 0) {
+            moves = null;
+        } else {
+            // the length is not trusted for the allocation: a corrupt one ends in a truncated board instead
+            StringBuilder letters = new StringBuilder(Math.min(length, 4 * buffer.capacity()));
+            for (int i = 0; i < length; i += 4) {
+                require(1);
+                int packed = buffer.get();
+                for (int j = 0; j < 4 && i + j < length; j++)
+                    letters.append(Board.MOVES.charAt((packed >>> (2 * j)) & 3));
+            }
+            moves = letters.toString();
+        }
+        count++;
+        return board;
+    }
+
+    /**
+     * Returns the moves of the empty tile that solve the last board returned by next(), as letters U, D, L and R,
+     * or null if it was written without a solution. Board.play() makes these moves.
+     */
+    public String getMoves() {
+        return moves;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // returns true once at least the given number of bytes is buffered, false if the channel ends before that
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return true;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!fill(bytes))
+            throw new IOException("Board " + (count + 1) + " is truncated");
+    }
+}
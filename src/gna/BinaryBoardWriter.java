@@ -0,0 +1,92 @@
+package gna;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes boards, each with an optional solution, to a channel in a compact binary format read by BinaryBoardReader.
+ * <p>
+ * The file starts with a 4-byte header. Then every board is written as its size N (a short), its tiles (a long with 4
+ * bits per tile for boards up to 4x4, otherwise one byte per tile, or two for boards of more than 256 tiles), the
+ * number of moves of its solution (an int, -1 if there is none) and the moves of the empty tile, four per byte,
+ * 2 bits each: 0 up, 1 down, 2 left, 3 right. A solution of 50 moves on a 4x4 board takes 27 bytes in all.
+ */
+public class BinaryBoardWriter implements Closeable {
+
+    static final int MAGIC = 0x42524431;        // "BRD1"
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    public BinaryBoardWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.putInt(MAGIC);
+    }
+
+    /**
+     * Writes board without a solution.
+     */
+    public void write(Board board) throws IOException {
+        write(board, null);
+    }
+
+    /**
+     * Writes board with the moves of the empty tile that solve it, one letter per move as returned by
+     * Solver.moves(), or null for none.
+     */
+    public void write(Board board, CharSequence moves) throws IOException {
+        int N = board.getSize();
+        reserve(2 + Long.BYTES);
+        buffer.putShort((short) N);
+        if (N <= Board.MAX_PACKED_SIZE) {
+            buffer.putLong(board.getPackedTiles());
+        } else {
+            for (int i = 0; i < N * N; i++) {
+                reserve(2);
+                if (N * N > 256)
+                    buffer.putShort((short) board.getTile(i));
+                else
+                    buffer.put((byte) board.getTile(i));
+            }
+        }
+        reserve(Integer.BYTES);
+        buffer.putInt(moves == null ? -1 : moves.length());
+        if (moves == null)
+            return;
+        for (int i = 0; i < moves.length(); i += 4) {
+            int packed = 0;
+            for (int j = 0; j < 4 && i + j < moves.length(); j++) {
+                int direction = Board.MOVES.indexOf(moves.charAt(i + j));
+                if (direction < 0)
+                    throw new IllegalArgumentException("Unknown move " + moves.charAt(i + j));
+                packed |= direction << (2 * j);
+            }
+            reserve(1);
+            buffer.put((byte) packed);
+        }
+    }
+
+    // makes room for the given number of bytes in the buffer
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -2,23 +2,42 @@ package gna;
 
 import java.util.*;
 
-public class Board {
+public class Board implements BoardView {
+
+    // Boards are stored packed: a board of size N <= 4 fits in a single long (4 bits per tile, tile at row-major
+    // index i in bits 4i..4i+3), larger boards use a byte[] with one byte per tile (two when N * N > 256).
+    // The packed form is never modified, so it can be shared between a board and its copies.
+    static final int MAX_PACKED_SIZE = 4;
+    static final int MAX_SIZE = 256;
+    private static final long[] GOALS = new long[MAX_PACKED_SIZE + 1];
+    // number of directions the empty tile can move in, see successorIndex()
+    static final int DIRECTIONS = 4;
+
+    static {
+        for (int N = 1; N <= MAX_PACKED_SIZE; N++) {
+            int[] goal = new int[N * N];
+            for (int i = 0; i < N * N - 1; i++)
+                goal[i] = i + 1;
+            GOALS[N] = packLong(goal);
+        }
+    }
 
-    private int[][] tiles;
     private final int N;
-    private int[] zeroCoordinates;
+    private final long packedTiles;
+    private final byte[] tiles;
+    private final int zeroIndex;
 
     private int moves;
     private Board previousBoard;
-    private int hammingPriority;
-    private int manhattanPriority;
+    // state of the heuristic of the Solver that generated this board, derived from the state of the previous board
+    private int heuristicState;
 
     public int getHammingPriority() {
-        return hammingPriority;
+        return hamming();
     }
 
     public int getManhattanPriority() {
-        return manhattanPriority;
+        return manhattan();
     }
 
     public int getMoves() {
@@ -26,68 +45,308 @@ public class Board {
     }
 
     public int[][] getTiles() {
-        return tiles.clone();
+        int[][] result = new int[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++)
+                result[i][j] = getTile(N * i + j);
+        }
+        return result;
     }
 
     public int getValue(int x, int y) {
-        return tiles[x][y];
+        return getTile(N * x + y);
     }
 
     public int[] getZeroCoordinates() {
-        return zeroCoordinates.clone();
+        return new int[]{zeroIndex / N, zeroIndex % N};
     }
 
     public Board getPreviousBoard() {
         return previousBoard;
     }
 
-    private void setValue(int x, int y, int value) {
-        tiles[x][y] = value;
+    int getHeuristicState() {
+        return heuristicState;
+    }
+
+    void setHeuristicState(int heuristicState) {
+        this.heuristicState = heuristicState;
+    }
+
+    // size N of this N-by-N board
+    public int getSize() {
+        return N;
     }
 
-    private void setZeroCoordinates(int x, int y) {
-        zeroCoordinates[0] = x;
-        zeroCoordinates[1] = y;
+    // row-major index of the empty tile
+    public int getZeroIndex() {
+        return zeroIndex;
     }
 
+    // value of the tile at row-major index
+    public int getTile(int index) {
+        if (tiles == null)
+            return (int) (packedTiles >>> (index << 2)) & 0xF;
+        if (tiles.length == N * N)
+            return tiles[index] & 0xFF;
+        return ((tiles[2 * index] & 0xFF) << 8) | (tiles[2 * index + 1] & 0xFF);
+    }
 
-    // construct a board from an N-by-N array of tiles
+
+    // construct a board from an N-by-N array of tiles, which must hold every number from 0 to N * N - 1 once;
+    // IllegalArgumentException otherwise
     public Board(int[][] tiles) {
-        N = tiles.length;
-        int[][] board = new int[N][N];
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                board[i][j] = tiles[i][j];
-                if (board[i][j] == 0) {
-                    zeroCoordinates = new int[]{i, j};
-                }
-            }
-        }
-        this.tiles = board;
-        this.previousBoard = null;
-        this.moves = 0;
-        this.hammingPriority = this.hamming();
-        this.manhattanPriority = this.manhattan();
+        this(tiles, null);
     }
 
     // polymorphism: constructor for solver.java
-    // this way hammingPriority and manhattanPriority doesn't have to be recalculated for every board to re-order the priority list
     public Board(int[][] tiles, Board previousBoard) {
-        N = tiles.length;
-        int[][] board = new int[N][N];
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                board[i][j] = tiles[i][j];
-                if (board[i][j] == 0) {
-                    zeroCoordinates = new int[]{i, j};
-                }
-            }
+        this(tiles.length, flatten(tiles), previousBoard);
+    }
+
+    // construct an N-by-N board from its tiles in row-major order, a permutation of 0 .. N * N - 1
+    Board(int N, int[] flatTiles, Board previousBoard) {
+        this.N = N;
+        if (N < 1 || N > MAX_SIZE)
+            throw new IllegalArgumentException("Boards must be from 1x1 up to " + MAX_SIZE + "x" + MAX_SIZE);
+        if (flatTiles.length != N * N)
+            throw new IllegalArgumentException("A board of size " + N + " has " + N * N + " tiles, not " + flatTiles.length);
+        // the packed forms keep only the low bits of a tile, so anything else would be silently corrupted
+        boolean[] seen = new boolean[N * N];
+        int zero = -1;
+        for (int i = 0; i < N * N; i++) {
+            int tile = flatTiles[i];
+            if (tile < 0 || tile >= N * N || seen[tile])
+                throw new IllegalArgumentException("Tiles must be the numbers 0 to " + (N * N - 1) + " once each, found "
+                        + (tile < 0 || tile >= N * N ? tile + " at position " + i : tile + " twice"));
+            seen[tile] = true;
+            if (tile == 0)
+                zero = i;
         }
-        this.tiles = board;
+        this.packedTiles = N <= MAX_PACKED_SIZE ? packLong(flatTiles) : 0;
+        this.tiles = N <= MAX_PACKED_SIZE ? null : packBytes(flatTiles);
+        this.zeroIndex = zero;
+        this.previousBoard = previousBoard;
+        this.moves = previousBoard == null ? 0 : previousBoard.getMoves() + 1;
+    }
+
+    private Board(int N, long packedTiles, byte[] tiles, int zeroIndex, Board previousBoard) {
+        this.N = N;
+        this.packedTiles = packedTiles;
+        this.tiles = tiles;
+        this.zeroIndex = zeroIndex;
         this.previousBoard = previousBoard;
-        this.moves = previousBoard.getMoves() + 1;
-        this.hammingPriority = this.hamming();
-        this.manhattanPriority = this.manhattan();
+        this.moves = previousBoard == null ? 0 : previousBoard.getMoves() + 1;
+    }
+
+    private static int[] flatten(int[][] tiles) {
+        int N = tiles.length;
+        int[] flatTiles = new int[N * N];
+        for (int i = 0; i < N; i++) {
+            if (tiles[i].length != N)
+                throw new IllegalArgumentException("Row " + i + " has " + tiles[i].length + " tiles, not " + N);
+            for (int j = 0; j < N; j++)
+                flatTiles[N * i + j] = tiles[i][j];
+        }
+        return flatTiles;
+    }
+
+    // board of size N <= MAX_PACKED_SIZE with the given packed tiles, not linked to a previous board. The tiles are
+    // not checked: input from outside goes through Board(int, int[], Board) instead
+    static Board fromPacked(int N, long packedTiles) {
+        return new Board(N, packedTiles, null, packedZeroIndex(packedTiles), null);
+    }
+
+    // index of the empty tile in packed tiles, which must hold one
+    static int packedZeroIndex(long packedTiles) {
+        int zero = 0;
+        while (((packedTiles >>> (zero << 2)) & 0xF) != 0)
+            zero++;
+        return zero;
+    }
+
+    // the tiles packed in a long, for boards of size N <= MAX_PACKED_SIZE
+    long getPackedTiles() {
+        return packedTiles;
+    }
+
+    private static long packLong(int[] flatTiles) {
+        long packed = 0;
+        for (int i = 0; i < flatTiles.length; i++)
+            packed |= (long) flatTiles[i] << (i << 2);
+        return packed;
+    }
+
+    private static byte[] packBytes(int[] flatTiles) {
+        if (flatTiles.length <= 256) {
+            byte[] packed = new byte[flatTiles.length];
+            for (int i = 0; i < flatTiles.length; i++)
+                packed[i] = (byte) flatTiles[i];
+            return packed;
+        }
+        byte[] packed = new byte[2 * flatTiles.length];
+        for (int i = 0; i < flatTiles.length; i++) {
+            packed[2 * i] = (byte) (flatTiles[i] >>> 8);
+            packed[2 * i + 1] = (byte) flatTiles[i];
+        }
+        return packed;
+    }
+
+    // board obtained by sliding the tile at row-major index "to" into the empty spot
+    private Board moveZero(int to, Board previousBoard) {
+        if (tiles == null)
+            return new Board(N, movePacked(packedTiles, zeroIndex, to), null, to, previousBoard);
+        byte[] packed = tiles.clone();
+        int width = tiles.length / (N * N);
+        for (int b = 0; b < width; b++) {
+            packed[width * zeroIndex + b] = tiles[width * to + b];
+            packed[width * to + b] = 0;
+        }
+        return new Board(N, 0, packed, to, previousBoard);
+    }
+
+    // packed tiles after sliding the tile at index "to" into the empty spot at index zero
+    static long movePacked(long packedTiles, int zero, int to) {
+        long value = (packedTiles >>> (to << 2)) & 0xF;
+        return packedTiles & ~(0xFL << (to << 2)) | (value << (zero << 2));
+    }
+
+    // the goal board of size N
+    static Board goal(int N) {
+        int[][] tiles = new int[N][N];
+        for (int i = 0; i < N * N - 1; i++)
+            tiles[i / N][i % N] = i + 1;
+        return new Board(tiles);
+    }
+
+    // copy of this board that is not linked to a previous board
+    Board copy() {
+        return new Board(N, packedTiles, tiles, zeroIndex, null);
+    }
+
+    // Symmetry: transposing a board (the tile at row r, column c goes to row c, column r) and relabeling every tile
+    // with the tile whose goal position is the transpose of its own maps the goal board onto itself and every move
+    // onto a move, so a board and its transposed board are the same number of moves from the goal. A state and its
+    // transposed state share one canonical form, the smaller of the two in the order of their packed tiles.
+
+    // row-major index of the transposed position of index on an N-by-N board
+    static int transposeIndex(int N, int index) {
+        return index % N * N + index / N;
+    }
+
+    // label of tile on the transposed board: the tile whose goal position is the transpose of the goal of tile
+    static int transposeTile(int N, int tile) {
+        return tile == 0 ? 0 : transposeIndex(N, tile - 1) + 1;
+    }
+
+    /**
+     * Returns the transposed board with relabeled tiles, which is as many moves from the goal as this board.
+     */
+    public Board transposed() {
+        if (tiles == null)
+            return new Board(N, transposePacked(N, packedTiles), null, transposeIndex(N, zeroIndex), null);
+        int[] flatTiles = new int[N * N];
+        for (int i = 0; i < N * N; i++)
+            flatTiles[transposeIndex(N, i)] = transposeTile(N, getTile(i));
+        return new Board(N, 0, packBytes(flatTiles), transposeIndex(N, zeroIndex), null);
+    }
+
+    // packed tiles of the transposed board, for boards of size N <= MAX_PACKED_SIZE
+    static long transposePacked(int N, long packedTiles) {
+        long packed = 0;
+        for (int i = 0; i < N * N; i++) {
+            long tile = transposeTile(N, (int) (packedTiles >>> (i << 2)) & 0xF);
+            packed |= tile << (transposeIndex(N, i) << 2);
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the canonical form of this board state: this board if it is not larger than its transposed board,
+     * otherwise the transposed board (not linked to a previous board).
+     */
+    public Board canonical() {
+        if (tiles == null) {
+            long canonical = canonicalPacked(N, packedTiles);
+            return canonical == packedTiles ? this : new Board(N, canonical, null, transposeIndex(N, zeroIndex), null);
+        }
+        Board transposed = transposed();
+        return Arrays.compareUnsigned(transposed.tiles, tiles) < 0 ? transposed : this;
+    }
+
+    // packed tiles of the canonical form, for boards of size N <= MAX_PACKED_SIZE
+    static long canonicalPacked(int N, long packedTiles) {
+        long transposed = transposePacked(N, packedTiles);
+        return Long.compareUnsigned(transposed, packedTiles) < 0 ? transposed : packedTiles;
+    }
+
+    /**
+     * Returns true if this board is its own canonical form.
+     */
+    public boolean isCanonical() {
+        if (tiles == null)
+            return canonicalPacked(N, packedTiles) == packedTiles;
+        return Arrays.compareUnsigned(tiles, transposed().tiles) <= 0;
+    }
+
+    @Override
+    public boolean isGoal() {
+        if (tiles == null)
+            return packedTiles == GOALS[N];
+        return BoardView.super.isGoal();
+    }
+
+    // return the board reached by sliding the tile at row-major index "to" into the empty spot, with this board as
+    // its previous board
+    Board successor(int to) {
+        return moveZero(to, this);
+    }
+
+    // return the row-major index the empty tile moves to in direction 0 (up), 1 (down), 2 (left) or 3 (right), or
+    // -1 if that move leaves the board or goes back to the previous board. The searches expand a board with
+    // successor(successorIndex(direction)) for every direction, so no list of successors is allocated.
+    int successorIndex(int direction) {
+        int to = moveIndex(N, zeroIndex, direction);
+        return previousBoard != null && to == previousBoard.zeroIndex ? -1 : to;
+    }
+
+    // the index the empty tile at index zero moves to in the given direction, or -1 if it would leave the board
+    static int moveIndex(int N, int zero, int direction) {
+        if (direction == 0)
+            return zero >= N ? zero - N : -1;
+        if (direction == 1)
+            return zero < N * N - N ? zero + N : -1;
+        if (direction == 2)
+            return zero % N > 0 ? zero - 1 : -1;
+        return zero % N < N - 1 ? zero + 1 : -1;
+    }
+
+    // letter of the move of the empty tile in each direction of successorIndex(): up, down, left and right
+    static final String MOVES = "UDLR";
+
+    // letter of the move of the empty tile from index "from" to the adjacent index "to" on an N-by-N board
+    static char moveLetter(int N, int from, int to) {
+        if (to == from - N)
+            return 'U';
+        if (to == from + N)
+            return 'D';
+        return to == from - 1 ? 'L' : 'R';
+    }
+
+    /**
+     * Returns the board reached by moving the empty tile as given by moves, one letter per move: U, D, L or R for
+     * up, down, left or right. The boards on the way are linked through their previous boards, back to this board.
+     */
+    public Board play(CharSequence moves) {
+        Board board = this;
+        for (int i = 0; i < moves.length(); i++) {
+            int direction = MOVES.indexOf(moves.charAt(i));
+            int to = direction < 0 ? -1 : moveIndex(N, board.zeroIndex, direction);
+            if (to < 0)
+                throw new IllegalArgumentException("Move " + (i + 1) + " (" + moves.charAt(i) + ") is not possible");
+            board = board.successor(to);
+        }
+        return board;
     }
 
     // return number of blocks out of place
@@ -95,7 +354,7 @@ public class Board {
         int totalValue = 0;
         for (int i = 0; i < N; i++) {
             for (int j = 0; j < N; j++) {
-                int value = tiles[i][j];
+                int value = getTile(N * i + j);
                 if (value != (N * i) + j + 1 && value != 0)
                     totalValue++;
             }
@@ -108,7 +367,7 @@ public class Board {
         int totalValue = 0;
         for (int i = 0; i < N; i++) {
             for (int j = 0; j < N; j++) {
-                int value = tiles[i][j];
+                int value = getTile(N * i + j);
                 int currentRow = i;
                 int currentColumn = j;
                 int correctRow = (int) Math.floor(value / N);
@@ -132,119 +391,61 @@ public class Board {
     }
 
 
-    // return a Collection of all neighboring board positions
+    // return a Collection of all neighboring board positions (they are all different, so no set is needed)
     public Collection<Board> neighbors() {
-        Set<Board> neighbors = new HashSet<>();
-        int xCoordinate = zeroCoordinates[0];
-        int yCoordinate = zeroCoordinates[1];
-
-        if (xCoordinate > 0) {
-            Board board = new Board(tiles);
-            board.setValue(xCoordinate, yCoordinate, getValue(xCoordinate - 1, yCoordinate));
-            board.setValue(xCoordinate - 1, yCoordinate, 0);
-            neighbors.add(board);
-        }
-
-        if (xCoordinate < N - 1) {
-            Board board = new Board(tiles);
-            board.setValue(xCoordinate, yCoordinate, getValue(xCoordinate + 1, yCoordinate));
-            board.setValue(xCoordinate + 1, yCoordinate, 0);
-            neighbors.add(board);
-        }
-
-        if (yCoordinate > 0) {
-            Board board = new Board(tiles);
-            board.setValue(xCoordinate, yCoordinate, getValue(xCoordinate, yCoordinate - 1));
-            board.setValue(xCoordinate, yCoordinate - 1, 0);
-            neighbors.add(board);
-        }
-        if (yCoordinate < N - 1) {
-            Board board = new Board(tiles);
-            board.setValue(xCoordinate, yCoordinate, getValue(xCoordinate, yCoordinate + 1));
-            board.setValue(xCoordinate, yCoordinate + 1, 0);
-            neighbors.add(board);
-        }
+        List<Board> neighbors = new ArrayList<>(DIRECTIONS);
+        int xCoordinate = zeroIndex / N;
+        int yCoordinate = zeroIndex % N;
+
+        if (xCoordinate > 0)
+            neighbors.add(moveZero(zeroIndex - N, null));
+        if (xCoordinate < N - 1)
+            neighbors.add(moveZero(zeroIndex + N, null));
+        if (yCoordinate > 0)
+            neighbors.add(moveZero(zeroIndex - 1, null));
+        if (yCoordinate < N - 1)
+            neighbors.add(moveZero(zeroIndex + 1, null));
         return neighbors;
     }
 
-    // is the initial board solvable? Note that the empty tile must first be moved to its correct position.
+    // is the initial board solvable? Every move changes the number of inversions (pairs of tiles in the wrong order,
+    // read row by row) by N - 1 for a vertical move and not at all for a horizontal one. For odd N the parity of the
+    // inversions never changes, for even N the parity of inversions + row of the empty tile never changes, so the
+    // board is solvable when that parity is the one of the goal board. Inversions are counted in O(N^2 log N) with a
+    // Fenwick tree, without changing the board.
     public boolean isSolvable() {
-        int[] originalPosition = new int[2];
-        originalPosition[0] = getZeroCoordinates()[0];
-        originalPosition[1] = getZeroCoordinates()[1];
-        if (!isZeroBottomRight()) {
-            // move the zero to its correct position and call isSolvable() on the newly acquired board
-            while (!(this.isZeroBottomRight())) {
-                int xCoordinate = this.getZeroCoordinates()[0];
-                int yCoordinate = this.getZeroCoordinates()[1];
-                if (xCoordinate != N - 1) {
-                    // swap zero with the tile right of it
-                    this.setValue(xCoordinate, yCoordinate, this.getValue(xCoordinate + 1, yCoordinate));
-                    this.setValue(xCoordinate + 1, yCoordinate, 0);
-                    this.setZeroCoordinates(xCoordinate + 1, yCoordinate);
-                } else if (yCoordinate != N - 1) {
-                    // swap zero with the tile under it
-                    this.setValue(xCoordinate, yCoordinate, this.getValue(xCoordinate, yCoordinate + 1));
-                    this.setValue(xCoordinate, yCoordinate + 1, 0);
-                    this.setZeroCoordinates(xCoordinate, yCoordinate + 1);
-                }
-            }
+        int cells = N * N;
+        int[] seen = new int[cells];           // Fenwick tree: how many of the tiles 1..value were read so far
+        long inversions = 0;
+        int read = 0;
+        for (int i = 0; i < cells; i++) {
+            int value = getTile(i);
+            if (value == 0)
+                continue;
+            int smaller = 0;
+            for (int k = value; k > 0; k -= k & -k)
+                smaller += seen[k - 1];
+            inversions += read - smaller;     // tiles read earlier with a larger value
+            for (int k = value; k <= cells - 1; k += k & -k)
+                seen[k - 1]++;
+            read++;
         }
-        List<Integer> stream = getStream();
-        // calculate equation and return true if larger than zero, else return false
-        double result = 1;
-        // start from one (tile with value zero is not needed in calculation)
-        for (int j = 1; j < N * N; j++)
-            for (int i = 1; i < j; i++)
-                result *= ((stream.indexOf(j) + 1) - (stream.indexOf(i) + 1));
-
-        // reset board
-        // move zero above
-        while (getZeroCoordinates()[1] != originalPosition[1]) {
-            int xCoordinate = this.getZeroCoordinates()[0];
-            int yCoordinate = this.getZeroCoordinates()[1];
-            this.setValue(xCoordinate, yCoordinate, this.getValue(xCoordinate, yCoordinate - 1));
-            this.setValue(xCoordinate, yCoordinate - 1, 0);
-            this.setZeroCoordinates(xCoordinate, yCoordinate - 1);
-        }
-        // move zero to left
-        while (getZeroCoordinates()[0] != originalPosition[0]) {
-            int xCoordinate = this.getZeroCoordinates()[0];
-            int yCoordinate = this.getZeroCoordinates()[1];
-            this.setValue(xCoordinate, yCoordinate, this.getValue(xCoordinate - 1, yCoordinate));
-            this.setValue(xCoordinate - 1, yCoordinate, 0);
-            this.setZeroCoordinates(xCoordinate - 1, yCoordinate);
-        }
-
-        return (result >= 0);
-    }
-
-
-    // returns stream (1D list) of the matrix (2D) containing the tiles
-    private List<Integer> getStream() {
-        List<Integer> stream = new ArrayList<>();
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                stream.add(tiles[i][j]);
-            }
-        }
-        return stream;
-    }
-
-    // helper function for isSolvable()
-    private boolean isZeroBottomRight() {
-        return (zeroCoordinates[0] == N - 1 && zeroCoordinates[1] == N - 1);
+        if (N % 2 == 1)
+            return inversions % 2 == 0;
+        // the goal board has no inversions and the empty tile in row N - 1
+        return (inversions + N - 1 - zeroIndex / N) % 2 == 0;
     }
 
     // return a string representation of the board
     public String toString() {
-        String result = "\n";
+        StringBuilder result = new StringBuilder(N * (4 * N + 1) + 1);
+        result.append('\n');
         for (int i = 0; i < N; i++) {
             for (int j = 0; j < N; j++)
-                result += " " + tiles[i][j];
-            result += "\n";
+                result.append(' ').append(getTile(N * i + j));
+            result.append('\n');
         }
-        return result;
+        return result.toString();
     }
 
     // Does this board equal y. Two boards are equal when they both were constructed
@@ -255,14 +456,16 @@ public class Board {
             return false;
 
         Board other = (Board) y;
-        return Arrays.deepEquals(tiles, other.tiles);
+        return N == other.N && packedTiles == other.packedTiles && Arrays.equals(tiles, other.tiles);
     }
 
     // Since we override equals(), we must also override hashCode(). When two objects are
     // equal according to equals() they must return the same hashCode.
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(tiles);
+        if (tiles == null)
+            return Long.hashCode(packedTiles * 0x9E3779B97F4A7C15L);
+        return Arrays.hashCode(tiles);
     }
 
 }
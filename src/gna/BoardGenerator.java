@@ -0,0 +1,181 @@
+package gna;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates solvable boards of any size for benchmarks and load tests, either uniformly at random among all solvable
+ * boards or by a random walk of a given number of moves from the goal.
+ * <p>
+ * Every board is preceded by a comment line that describes its difficulty, which BoardReader and BatchSolver pass on:
+ * "# manhattan=34 walk=60 optimal=42". The walk length is an upper bound on the number of moves; the optimal number of
+ * moves is only there when it was computed (-optimal) within the time limit.
+ * <p>
+ * Usage: java gna.BoardGenerator [-count n] [-seed s] [-walk moves] [-optimal heuristic] [-timeout seconds]
+ * [-out directory | -binary file] N
+ * <p>
+ * Without -walk the boards are uniform. The boards are written one after the other to standard output, or one per
+ * file in the format of boards/ to a directory with -out, or with BinaryBoardWriter to a file with -binary (with the
+ * optimal solution if it was computed, but without the comments).
+ */
+public class BoardGenerator {
+
+    private final Random random;
+
+    public BoardGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns an N-by-N board drawn uniformly from all solvable boards: a random permutation of the tiles, of which
+     * two tiles are swapped if it is not solvable. Swapping two tiles maps the unsolvable boards one to one onto the
+     * solvable ones, so every solvable board is equally likely.
+     */
+    public Board uniform(int N) {
+        int[] tiles = new int[N * N];
+        for (int i = 0; i < tiles.length; i++) {
+            int j = random.nextInt(i + 1);
+            tiles[i] = tiles[j];
+            tiles[j] = i;
+        }
+        Board board = new Board(N, tiles, null);
+        if (board.isSolvable())
+            return board;
+        // swap the first two tiles that are not empty
+        int first = tiles[0] == 0 ? 1 : 0;
+        int second = tiles[first + 1] == 0 ? first + 2 : first + 1;
+        int tile = tiles[first];
+        tiles[first] = tiles[second];
+        tiles[second] = tile;
+        return new Board(N, tiles, null);
+    }
+
+    /**
+     * Returns the N-by-N board reached from the goal by moving the empty tile the given number of times in a random
+     * direction, never straight back. Its shortest solution takes at most that many moves, and has the same parity.
+     */
+    public Board walk(int N, int moves) {
+        if (N < 2 && moves > 0)
+            throw new IllegalArgumentException("The empty tile cannot move on a 1x1 board");
+        MutableBoard board = new MutableBoard(Board.goal(N));
+        int previousZero = -1;
+        for (int i = 0; i < moves; i++) {
+            int zero = board.getZeroIndex();
+            int to;
+            do {
+                to = Board.moveIndex(N, zero, random.nextInt(Board.DIRECTIONS));
+            } while (to < 0 || to == previousZero);
+            previousZero = board.move(to);
+        }
+        int[] tiles = new int[N * N];
+        for (int i = 0; i < tiles.length; i++)
+            tiles[i] = board.getTile(i);
+        return new Board(N, tiles, null);
+    }
+
+    // comment line describing the difficulty of board: walk < 0 if it was not generated by a walk, and solver null
+    // if the optimal number of moves is not known
+    static String describe(Board board, int walk, Solver solver) {
+        StringBuilder comment = new StringBuilder("# manhattan=").append(board.manhattan());
+        if (walk >= 0)
+            comment.append(" walk=").append(walk);
+        if (solver != null && solver.getOutcome() == SearchOutcome.SOLVED)
+            comment.append(" optimal=").append(solver.moveCount());
+        return comment.toString();
+    }
+
+    // the board in the format of boards/, after its comment line
+    static void print(PrintWriter out, String comment, Board board) {
+        int N = board.getSize();
+        int width = Integer.toString(N * N - 1).length();
+        out.println(comment);
+        out.println(N);
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < N; i++) {
+            row.setLength(0);
+            for (int j = 0; j < N; j++) {
+                String tile = Integer.toString(board.getValue(i, j));
+                for (int k = tile.length(); k < width; k++)
+                    row.append(' ');
+                row.append(tile).append(' ');
+            }
+            out.println(row);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = 1;
+        long seed = System.nanoTime();
+        int walk = -1;
+        String heuristicName = null;
+        long timeoutMillis = Long.MAX_VALUE;
+        Path directory = null;
+        Path binaryFile = null;
+        int i = 0;
+        for (; i < args.length - 1; i += 2) {
+            if (args[i].equals("-count"))
+                count = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("-walk"))
+                walk = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-optimal"))
+                heuristicName = args[i + 1];
+            else if (args[i].equals("-timeout"))
+                timeoutMillis = (long) (Double.parseDouble(args[i + 1]) * 1000);
+            else if (args[i].equals("-out"))
+                directory = Paths.get(args[i + 1]);
+            else if (args[i].equals("-binary"))
+                binaryFile = Paths.get(args[i + 1]);
+            else
+                break;
+        }
+        if (i != args.length - 1) {
+            System.err.println("Usage: java gna.BoardGenerator [-count n] [-seed s] [-walk moves] "
+                    + "[-optimal hamming|manhattan|linear|walking|pdb] [-timeout seconds] "
+                    + "[-out directory | -binary file] N");
+            System.exit(1);
+        }
+        int N = Integer.parseInt(args[i]);
+
+        BoardGenerator generator = new BoardGenerator(seed);
+        Heuristic heuristic = heuristicName == null ? null : BatchSolver.createHeuristic(heuristicName, N);
+        String kind = walk >= 0 ? "walk" + walk : "uniform";
+        if (directory != null)
+            Files.createDirectories(directory);
+        BinaryBoardWriter binary = binaryFile == null ? null : new BinaryBoardWriter(Files.newByteChannel(binaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        try {
+            for (int k = 1; k <= count; k++) {
+                Board board = walk >= 0 ? generator.walk(N, walk) : generator.uniform(N);
+                Solver solver = null;
+                if (heuristic != null) {
+                    SearchLimits limits = new SearchLimits().setTimeLimit(timeoutMillis, TimeUnit.MILLISECONDS);
+                    solver = new Solver(board, heuristic, SearchMode.A_STAR, null, limits);
+                }
+                String comment = describe(board, walk, solver);
+                if (binary != null) {
+                    boolean solved = solver != null && solver.getOutcome() == SearchOutcome.SOLVED;
+                    binary.write(board, solved ? solver.moves() : null);
+                } else if (directory != null) {
+                    Path file = directory.resolve("random" + N + "x" + N + "-" + kind + "-" + k + ".txt");
+                    try (PrintWriter fileOut = new PrintWriter(Files.newBufferedWriter(file))) {
+                        print(fileOut, comment, board);
+                    }
+                } else {
+                    print(out, comment, board);
+                }
+            }
+        } finally {
+            out.flush();
+            if (binary != null)
+                binary.close();
+        }
+    }
+}
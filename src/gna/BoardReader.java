@@ -0,0 +1,133 @@
+package gna;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads boards one after the other from a text stream: the size N followed by the N * N tiles row by row, separated
+ * by white space, repeated until the end of the stream. A # starts a comment that runs to the end of the line, such
+ * as the description of a board written by BoardGenerator.
+ * <p>
+ * The digits are parsed straight from a buffer of bytes, without a tokenizer or a string per number, so a stream of
+ * thousands of boards is read at the speed of the disk.
+ */
+public class BoardReader implements Closeable {
+
+    private static final int MAX_TILE = 1 << 20;       // larger numbers are an error, long before int overflow
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+    private int count = 0;
+    private final StringBuilder comment = new StringBuilder();
+
+    public BoardReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Returns the next board, or null at the end of the stream.
+     *
+     * @throws IOException if the stream ends within a board, holds anything but numbers, white space and comments,
+     *                     or holds a board that is not valid (see Board)
+     */
+    public Board next() throws IOException {
+        comment.setLength(0);
+        int N = readNumber();
+        if (N < 0)
+            return null;
+        // checked before N * N tiles are allocated, which overflows for large N
+        if (N == 0 || N > Board.MAX_SIZE)
+            throw new IOException("Board " + (count + 1) + " has size " + N + ", not 1 to " + Board.MAX_SIZE);
+        int[] tiles = new int[N * N];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = readNumber();
+            if (tiles[i] < 0)
+                throw new IOException("Board " + (count + 1) + " is incomplete");
+        }
+        Board board;
+        try {
+            board = new Board(N, tiles, null);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Board " + (count + 1) + ": " + e.getMessage(), e);
+        }
+        count++;
+        return board;
+    }
+
+    /**
+     * Returns the comments read with the last board, without the #, one line each, or null if there were none.
+     */
+    public String getComment() {
+        return comment.length() == 0 ? null : comment.toString();
+    }
+
+    /**
+     * Returns the number of boards read so far.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // the next number, or -1 at the end of the stream
+    private int readNumber() throws IOException {
+        int c = skipSpace();
+        if (c < 0)
+            return -1;
+        if (c < '0' || c > '9')
+            throw new IOException("Unexpected character '" + (char) c + "' in board " + (count + 1));
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = 10 * value + c - '0';
+            if (value > MAX_TILE)
+                throw new IOException("Number too large in board " + (count + 1));
+            c = read();
+        }
+        if (c >= 0)
+            position--;         // the byte after the number is read again by the next call
+        return value;
+    }
+
+    // skips white space and comments, returns the next byte or -1 at the end of the stream
+    private int skipSpace() throws IOException {
+        int c = read();
+        while (true) {
+            if (c == '#') {
+                if (comment.length() > 0)
+                    comment.append('\n');
+                c = read();
+                while (c == ' ')
+                    c = read();
+                for (; c >= 0 && c != '\n' && c != '\r'; c = read())
+                    comment.append((char) c);
+                int end = comment.length();
+                while (end > 0 && comment.charAt(end - 1) == ' ')
+                    end--;
+                comment.setLength(end);
+            } else if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f') {
+                c = read();
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
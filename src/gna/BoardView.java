@@ -0,0 +1,27 @@
+package gna;
+
+/**
+ * Read access to the tiles of an N-by-N board, shared by Board and the board that the depth-first searches of
+ * Solver modify in place, so heuristics can be evaluated on both.
+ */
+public interface BoardView {
+
+    // size N of the N-by-N board
+    int getSize();
+
+    // value of the tile at row-major index (0 for the empty tile)
+    int getTile(int index);
+
+    // row-major index of the empty tile
+    int getZeroIndex();
+
+    // is this the goal board, with the tiles in order and the empty tile in the bottom right corner?
+    default boolean isGoal() {
+        int cells = getSize() * getSize();
+        for (int i = 0; i < cells - 1; i++) {
+            if (getTile(i) != i + 1)
+                return false;
+        }
+        return true;
+    }
+}
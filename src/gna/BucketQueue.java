@@ -0,0 +1,114 @@
+package gna;
+
+/**
+ * Open list of A*: boards in buckets indexed by their priority f = moves + h and, within that, by h.
+ * <p>
+ * Priorities are small non-negative integers, so adding a board is O(1) and taking the board with the lowest f is
+ * amortized O(1), where java.util.PriorityQueue needs O(log n) comparisons for both. Among boards with the same f
+ * the one with the lowest h (closest to the goal) comes first, and among those the most recently added one. A goal
+ * board (h = 0) is therefore taken as soon as its f is the minimum.
+ */
+final class BucketQueue {
+
+    private static final int INITIAL_BUCKET_SIZE = 16;
+
+    private Board[][][] buckets = new Board[64][][];     // [f][h] -> stack of boards
+    private int[][] bucketSizes = new int[64][];
+    private int[] countPerPriority = new int[64];
+    private int minPriority = Integer.MAX_VALUE;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // add board with priority f = moves + h
+    void add(Board board, int priority, int heuristic) {
+        if (priority >= buckets.length)
+            grow(priority);
+        if (buckets[priority] == null || heuristic >= buckets[priority].length) {
+            int length = Math.max(heuristic + 1, priority + 1);
+            Board[][] stacks = new Board[length][];
+            int[] sizes = new int[length];
+            if (buckets[priority] != null) {
+                System.arraycopy(buckets[priority], 0, stacks, 0, buckets[priority].length);
+                System.arraycopy(bucketSizes[priority], 0, sizes, 0, bucketSizes[priority].length);
+            }
+            buckets[priority] = stacks;
+            bucketSizes[priority] = sizes;
+        }
+        Board[] stack = buckets[priority][heuristic];
+        int stackSize = bucketSizes[priority][heuristic];
+        if (stack == null) {
+            stack = new Board[INITIAL_BUCKET_SIZE];
+            buckets[priority][heuristic] = stack;
+        } else if (stackSize == stack.length) {
+            Board[] larger = new Board[2 * stack.length];
+            System.arraycopy(stack, 0, larger, 0, stack.length);
+            stack = larger;
+            buckets[priority][heuristic] = stack;
+        }
+        stack[stackSize] = board;
+        bucketSizes[priority][heuristic]++;
+        countPerPriority[priority]++;
+        minPriority = Math.min(minPriority, priority);
+        size++;
+    }
+
+    // lowest priority f of the boards in the queue
+    int minPriority() {
+        if (size == 0)
+            throw new IllegalStateException("Queue is empty");
+        while (countPerPriority[minPriority] == 0)
+            minPriority++;
+        return minPriority;
+    }
+
+    // board with the lowest f, lowest h among those and most recently added among those; null if the queue is empty
+    Board peek() {
+        if (size == 0)
+            return null;
+        int f = minPriority();
+        int h = lowestHeuristic(f);
+        return buckets[f][h][bucketSizes[f][h] - 1];
+    }
+
+    // removes and returns the board peek() returns
+    Board poll() {
+        if (size == 0)
+            return null;
+        int f = minPriority();
+        int h = lowestHeuristic(f);
+        int index = --bucketSizes[f][h];
+        Board board = buckets[f][h][index];
+        buckets[f][h][index] = null;
+        countPerPriority[f]--;
+        size--;
+        return board;
+    }
+
+    private int lowestHeuristic(int priority) {
+        int[] sizes = bucketSizes[priority];
+        int h = 0;
+        while (sizes[h] == 0)
+            h++;
+        return h;
+    }
+
+    private void grow(int priority) {
+        int length = Math.max(2 * buckets.length, priority + 1);
+        Board[][][] largerBuckets = new Board[length][][];
+        int[][] largerSizes = new int[length][];
+        int[] largerCounts = new int[length];
+        System.arraycopy(buckets, 0, largerBuckets, 0, buckets.length);
+        System.arraycopy(bucketSizes, 0, largerSizes, 0, bucketSizes.length);
+        System.arraycopy(countPerPriority, 0, largerCounts, 0, countPerPriority.length);
+        buckets = largerBuckets;
+        bucketSizes = largerSizes;
+        countPerPriority = largerCounts;
+    }
+}
@@ -0,0 +1,331 @@
+package gna;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Breadth-first search over every board state of one size, with the frontiers on disk instead of in memory: the
+ * number of states at each distance from the goal and the states farthest from it, for boards up to 4x4.
+ * <p>
+ * A state is its tiles packed in a long, stored in canonical form (see Board.canonical()), so a state and its
+ * transposed state are stored once; the counts include both. The states at one depth are kept in a file, sorted and
+ * delta-compressed: every state is written as its difference with the previous one, in groups of 7 bits. The files
+ * are read memory-mapped, one window at a time.
+ * <p>
+ * Expanding a depth fills a buffer in memory with canonical successors; whenever it is full it is sorted, rid of
+ * duplicates and written to disk as a sorted run. One streaming merge of the runs then gives the next depth, dropping
+ * the duplicates between runs and the states of the previous depth. Every move takes the empty tile to a cell of the
+ * other color of a checkerboard, so all neighbors of a depth lie at the depths right before and after it: only the
+ * previous depth has to be subtracted, and only two depths are on disk at once, besides the runs.
+ * <p>
+ * Usage: java gna.ExternalSearch [-buffer states] [-samples n] [-work directory] [-boards directory] N
+ */
+public class ExternalSearch {
+
+    private static final int MAX_ENCODED = 10;          // bytes of the longest encoded difference
+    private static final long WINDOW = 1L << 26;        // bytes of a frontier file mapped at once
+    private static final int DEFAULT_BUFFER = 1 << 24;  // states sorted in memory at once: 128 MB
+
+    private final int N;
+    private final Path directory;
+    private final long[] buffer;
+    private final List<Long> counts = new ArrayList<Long>();
+    private final List<Board> antipodes = new ArrayList<Board>();
+    private int files = 0;
+
+    /**
+     * Prepares a search over all N-by-N boards that keeps its files in directory and sorts bufferStates states in
+     * memory at once.
+     */
+    public ExternalSearch(int N, Path directory, int bufferStates) {
+        if (N < 2 || N > Board.MAX_PACKED_SIZE)
+            throw new IllegalArgumentException("Only boards of 2x2 up to 4x4 can be searched exhaustively");
+        if (bufferStates < Board.DIRECTIONS)
+            throw new IllegalArgumentException("Buffer must hold at least " + Board.DIRECTIONS + " states");
+        this.N = N;
+        this.directory = directory;
+        this.buffer = new long[bufferStates];
+    }
+
+    /**
+     * Runs the search until every state was reached, and keeps up to samples of the states at the largest depth.
+     *
+     * @param progress receives one line per depth, may be null
+     */
+    public void run(int samples, PrintStream progress) throws IOException {
+        Files.createDirectories(directory);
+        Path previous = null;
+        Path current = newFile("depth");
+        try (FrontierWriter writer = new FrontierWriter(current)) {
+            writer.write(Board.goal(N).getPackedTiles());
+        }
+        counts.add(1L);
+        while (true) {
+            if (progress != null)
+                progress.printf("depth %d: %d states, %d bytes%n", counts.size() - 1, counts.get(counts.size() - 1),
+                        Files.size(current));
+            List<Path> runs = expand(current);
+            Path next = newFile("depth");
+            long count = merge(runs, previous, next);
+            for (Path run : runs)
+                Files.delete(run);
+            if (count == 0) {
+                Files.delete(next);
+                break;
+            }
+            if (previous != null)
+                Files.delete(previous);
+            counts.add(count);
+            previous = current;
+            current = next;
+        }
+        readAntipodes(current, samples);
+        if (previous != null)
+            Files.delete(previous);
+        Files.delete(current);
+    }
+
+    /**
+     * Returns the number of states at each distance from the goal, found by run().
+     */
+    public List<Long> getCounts() {
+        return Collections.unmodifiableList(counts);
+    }
+
+    /**
+     * Returns the states at the largest distance from the goal kept by run().
+     */
+    public List<Board> getAntipodes() {
+        return Collections.unmodifiableList(antipodes);
+    }
+
+    private Path newFile(String name) {
+        return directory.resolve(name + files++ + ".bin");
+    }
+
+    // writes the canonical successors of the states in layer as sorted runs, and returns the files of the runs
+    private List<Path> expand(Path layer) throws IOException {
+        List<Path> runs = new ArrayList<Path>();
+        int size = 0;
+        try (FrontierReader reader = new FrontierReader(layer)) {
+            while (reader.advance()) {
+                long state = reader.current;
+                int zero = Board.packedZeroIndex(state);
+                if (size > buffer.length - Board.DIRECTIONS) {
+                    runs.add(writeRun(size));
+                    size = 0;
+                }
+                for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                    int to = Board.moveIndex(N, zero, direction);
+                    if (to >= 0)
+                        buffer[size++] = Board.canonicalPacked(N, Board.movePacked(state, zero, to));
+                }
+            }
+        }
+        if (size > 0)
+            runs.add(writeRun(size));
+        return runs;
+    }
+
+    private Path writeRun(int size) throws IOException {
+        Arrays.sort(buffer, 0, size);
+        Path run = newFile("run");
+        try (FrontierWriter writer = new FrontierWriter(run)) {
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || buffer[i] != buffer[i - 1])
+                    writer.write(buffer[i]);
+            }
+        }
+        return run;
+    }
+
+    // merges the runs into the file next, without duplicates and without the states of the file previous (if not
+    // null), and returns the number of states written, counting a state and its transposed state separately
+    private long merge(List<Path> runs, Path previous, Path next) throws IOException {
+        PriorityQueue<FrontierReader> heads = new PriorityQueue<FrontierReader>(Math.max(1, runs.size()),
+                (a, b) -> Long.compare(a.current, b.current));
+        FrontierReader old = null;
+        long count = 0;
+        try (FrontierWriter writer = new FrontierWriter(next)) {
+            for (Path run : runs) {
+                FrontierReader reader = new FrontierReader(run);
+                if (reader.advance())
+                    heads.add(reader);
+                else
+                    reader.close();
+            }
+            boolean oldLeft = false;
+            if (previous != null) {
+                old = new FrontierReader(previous);
+                oldLeft = old.advance();
+            }
+            while (!heads.isEmpty()) {
+                FrontierReader reader = heads.poll();
+                long state = reader.current;
+                if (reader.advance())
+                    heads.add(reader);
+                else
+                    reader.close();
+                if (writer.count > 0 && state == writer.last)
+                    continue;
+                while (oldLeft && old.current < state)
+                    oldLeft = old.advance();
+                if (oldLeft && old.current == state)
+                    continue;
+                writer.write(state);
+                count += Board.transposePacked(N, state) == state ? 1 : 2;
+            }
+        } finally {
+            for (FrontierReader reader : heads)
+                reader.close();
+            if (old != null)
+                old.close();
+        }
+        return count;
+    }
+
+    // keeps up to samples states of layer, with their transposed states
+    private void readAntipodes(Path layer, int samples) throws IOException {
+        try (FrontierReader reader = new FrontierReader(layer)) {
+            while (antipodes.size() < samples && reader.advance()) {
+                Board board = Board.fromPacked(N, reader.current);
+                antipodes.add(board);
+                Board transposed = board.transposed();
+                if (antipodes.size() < samples && !transposed.equals(board))
+                    antipodes.add(transposed);
+            }
+        }
+    }
+
+    // writes sorted states as differences with the previous state: 7 bits per byte, the high bit set on all bytes
+    // but the last
+    private static final class FrontierWriter implements Closeable {
+
+        private final OutputStream out;
+        private long last = Long.MIN_VALUE;
+        private long count = 0;
+
+        FrontierWriter(Path file) throws IOException {
+            out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        }
+
+        void write(long state) throws IOException {
+            long difference = state - last;
+            while ((difference & ~0x7FL) != 0) {
+                out.write((int) (difference & 0x7F) | 0x80);
+                difference >>>= 7;
+            }
+            out.write((int) difference);
+            last = state;
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // reads a file written by a FrontierWriter through a memory-mapped window that moves along the file
+    private static final class FrontierReader implements Closeable {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long current = Long.MIN_VALUE;
+
+        FrontierReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+        }
+
+        // reads the next state into current, returns false at the end of the file
+        boolean advance() throws IOException {
+            long position = windowStart + window.position();
+            if (position == size)
+                return false;
+            if (window.remaining() < MAX_ENCODED && windowStart + window.limit() < size)
+                map(position);
+            long difference = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = window.get();
+                difference |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            current += difference;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int bufferStates = DEFAULT_BUFFER;
+        int samples = 10;
+        Path work = null;
+        Path boards = Paths.get("boards");
+        int i = 0;
+        for (; i < args.length - 1; i += 2) {
+            if (args[i].equals("-buffer"))
+                bufferStates = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-samples"))
+                samples = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-work"))
+                work = Paths.get(args[i + 1]);
+            else if (args[i].equals("-boards"))
+                boards = Paths.get(args[i + 1]);
+            else
+                break;
+        }
+        if (i != args.length - 1) {
+            System.err.println("Usage: java gna.ExternalSearch [-buffer states] [-samples n] [-work directory] "
+                    + "[-boards directory] N");
+            System.exit(1);
+        }
+        int N = Integer.parseInt(args[i]);
+        if (work == null)
+            work = Files.createTempDirectory("bfs");
+
+        long startTime = System.currentTimeMillis();
+        ExternalSearch search = new ExternalSearch(N, work, bufferStates);
+        search.run(samples, System.out);
+        long total = 0;
+        for (long count : search.getCounts())
+            total += count;
+        int depth = search.getCounts().size() - 1;
+        System.out.println(total + " states, at most " + depth + " moves from the goal, in "
+                + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+
+        Files.createDirectories(boards);
+        int index = 1;
+        for (Board board : search.getAntipodes()) {
+            Path file = boards.resolve("puzzle" + N + "x" + N + "-antipode" + index++ + ".txt");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println(N);
+                for (int row = 0; row < N; row++) {
+                    for (int column = 0; column < N; column++)
+                        out.printf("%2d ", board.getValue(row, column));
+                    out.println();
+                }
+            }
+            System.out.println(depth + " moves: " + file);
+        }
+    }
+}
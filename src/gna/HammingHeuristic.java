@@ -0,0 +1,43 @@
+package gna;
+
+/**
+ * Number of tiles out of place, compared to the goal board or to any other target board.
+ */
+public class HammingHeuristic implements Heuristic {
+
+    private final int[] targetIndex;    // tile -> row-major index in the target board, null for the goal board
+
+    public HammingHeuristic() {
+        targetIndex = null;
+    }
+
+    public HammingHeuristic(Board target) {
+        targetIndex = new int[target.getSize() * target.getSize()];
+        for (int i = 0; i < targetIndex.length; i++)
+            targetIndex[target.getTile(i)] = i;
+    }
+
+    public Heuristic towards(Board target) {
+        return new HammingHeuristic(target);
+    }
+
+    public int evaluate(BoardView board) {
+        int cells = board.getSize() * board.getSize();
+        int totalValue = 0;
+        for (int i = 0; i < cells; i++) {
+            int value = board.getTile(i);
+            if (value != 0 && !inPlace(value, i))
+                totalValue++;
+        }
+        return totalValue;
+    }
+
+    public int update(BoardView board, int state, int tile, int from, int to) {
+        return state - (inPlace(tile, from) ? 0 : 1) + (inPlace(tile, to) ? 0 : 1);
+    }
+
+    // is tile at its position in the target board when at row-major index?
+    private boolean inPlace(int tile, int index) {
+        return targetIndex == null ? tile == index + 1 : targetIndex[tile] == index;
+    }
+}
@@ -0,0 +1,37 @@
+package gna;
+
+/**
+ * A priority function for Solver: a lower bound on the number of moves from a board to the goal.
+ * <p>
+ * A heuristic describes a board by an int state. The state of the initial board is computed from scratch with
+ * evaluate(); after that every move only updates the state of the previous board, which lets heuristics such as
+ * Manhattan distance be maintained in O(1) per move. For most heuristics the state is the estimate itself.
+ * <p>
+ * A heuristic may be shared by solvers running on different threads, so implementations must not change any
+ * state after construction, other than scratch space kept per thread.
+ */
+public interface Heuristic {
+
+    // state of the heuristic for board, computed from scratch
+    int evaluate(BoardView board);
+
+    // state after tile slid from row-major index "from" to index "to" (the old position of the empty tile), given the
+    // state before the move. board shows the position after the move.
+    int update(BoardView board, int state, int tile, int from, int to);
+
+    // lower bound on the number of moves to the goal of a board with the given state
+    default int value(int state) {
+        return state;
+    }
+
+    // lower bound on the number of moves from board to the goal
+    default int estimate(BoardView board) {
+        return value(evaluate(board));
+    }
+
+    // the same kind of heuristic with target, a board of the same size, in place of the goal; null if this kind only
+    // works towards the goal
+    default Heuristic towards(Board target) {
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package gna;
+
+/**
+ * Manhattan distance plus linear conflicts: when tiles are in their goal row (or column) but in the wrong order
+ * relative to each other, all but a longest correctly ordered subsequence of them have to leave the line and come
+ * back, which costs two moves per tile on top of their Manhattan distance. Like ManhattanHeuristic, the goal can
+ * also be any other target board.
+ */
+public class LinearConflictHeuristic implements Heuristic {
+
+    private final int[] targetIndex;    // tile -> row-major index in the target board, null for the goal board
+    // scratch space of conflicts(), one per thread since solvers on several threads share the heuristic
+    private final ThreadLocal<int[]> smallestTails = ThreadLocal.withInitial(() -> new int[0]);
+
+    public LinearConflictHeuristic() {
+        targetIndex = null;
+    }
+
+    public LinearConflictHeuristic(Board target) {
+        targetIndex = new int[target.getSize() * target.getSize()];
+        for (int i = 0; i < targetIndex.length; i++)
+            targetIndex[target.getTile(i)] = i;
+    }
+
+    public Heuristic towards(Board target) {
+        return new LinearConflictHeuristic(target);
+    }
+
+    public int evaluate(BoardView board) {
+        int N = board.getSize();
+        int totalValue = 0;
+        for (int i = 0; i < N * N; i++) {
+            int value = board.getTile(i);
+            if (value != 0)
+                totalValue += targetDistance(N, value, i);
+        }
+        int[] smallestTail = smallestTail(N);
+        for (int line = 0; line < N; line++) {
+            totalValue += conflicts(board, true, line, -1, 0, -1, smallestTail)
+                    + conflicts(board, false, line, -1, 0, -1, smallestTail);
+        }
+        return totalValue;
+    }
+
+    // only the lines the tile leaves and enters change: the rows for a vertical move, the columns for a horizontal one
+    public int update(BoardView board, int state, int tile, int from, int to) {
+        int N = board.getSize();
+        int result = state - targetDistance(N, tile, from) + targetDistance(N, tile, to);
+        boolean rows = from / N != to / N;
+        int lineFrom = rows ? from / N : from % N;
+        int lineTo = rows ? to / N : to % N;
+        int[] smallestTail = smallestTail(N);
+        result -= conflicts(board, rows, lineFrom, from, tile, to, smallestTail)
+                + conflicts(board, rows, lineTo, from, tile, to, smallestTail);
+        result += conflicts(board, rows, lineFrom, -1, 0, -1, smallestTail)
+                + conflicts(board, rows, lineTo, -1, 0, -1, smallestTail);
+        return result;
+    }
+
+    private int[] smallestTail(int N) {
+        int[] smallestTail = smallestTails.get();
+        if (smallestTail.length < N) {
+            smallestTail = new int[N];
+            smallestTails.set(smallestTail);
+        }
+        return smallestTail;
+    }
+
+    // row-major index of tile in the target board
+    private int target(int tile) {
+        return targetIndex == null ? tile - 1 : targetIndex[tile];
+    }
+
+    // Manhattan distance from index to the position of tile in the target board
+    private int targetDistance(int N, int tile, int index) {
+        int target = target(tile);
+        return Math.abs(index / N - target / N) + Math.abs(index % N - target % N);
+    }
+
+    // extra moves caused by conflicts in the given row or column. When tileIndex >= 0 the board is read as it was
+    // before tile moved from tileIndex to emptyIndex. smallestTail[k], at least N long, is overwritten with the
+    // smallest last goal position of an ordered run of k + 1 tiles.
+    private int conflicts(BoardView board, boolean row, int line, int tileIndex, int tile, int emptyIndex,
+                                 int[] smallestTail) {
+        int N = board.getSize();
+        int inLine = 0;
+        int longest = 0;
+        for (int k = 0; k < N; k++) {
+            int index = row ? N * line + k : N * k + line;
+            int value = index == tileIndex ? tile : index == emptyIndex ? 0 : board.getTile(index);
+            if (value == 0)
+                continue;
+            int goal = target(value);
+            if ((row ? goal / N : goal % N) != line)
+                continue;
+            int position = row ? goal % N : goal / N;
+            inLine++;
+            int length = 0;
+            while (length < longest && smallestTail[length] < position)
+                length++;
+            smallestTail[length] = position;
+            if (length == longest)
+                longest++;
+        }
+        return 2 * (inLine - longest);
+    }
+}
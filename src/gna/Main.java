@@ -1,36 +1,37 @@
 package gna;
 
 import libpract.PriorityFunc;
-import libpract.StdIn;
 
-class Main {
-    public static void main(String[] args) {
-        int N = StdIn.readInt();
-        int[][] tiles = new int[N][N];
-
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++)
-                tiles[i][j] = StdIn.readInt();
-        }
-
-        Board initial = new Board(tiles);
-        if (!initial.isSolvable()) {
-            System.out.println("No solution possible");
-        } else {
-//            double startTime = System.currentTimeMillis();
-            Solver solver = new Solver(initial, PriorityFunc.MANHATTAN);
-//            double endTime = System.currentTimeMillis();
-//            double elapsedTime = (endTime - startTime) / 1000.0;
-
-            for (Board board : solver.solution())
-                System.out.println(board);
+import java.io.*;
 
-            System.out.println("Minimum number of moves = " + Integer.toString(solver.solution().size() - 1));
-//            System.out.println("Time taken: " + elapsedTime);
+// Solves the boards read from standard input (one or more, see BoardReader). With -moves every solution is printed
+// as the moves of the empty tile (U, D, L, R) instead of board by board.
+class Main {
+    public static void main(String[] args) throws IOException {
+        boolean printMoves = args.length > 0 && args[0].equals("-moves");
+        BoardReader reader = new BoardReader(System.in);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+
+        for (Board initial = reader.next(); initial != null; initial = reader.next()) {
+            if (!initial.isSolvable()) {
+                out.println("No solution possible");
+            } else {
+//                double startTime = System.currentTimeMillis();
+                Solver solver = new Solver(initial, PriorityFunc.MANHATTAN);
+//                double endTime = System.currentTimeMillis();
+//                double elapsedTime = (endTime - startTime) / 1000.0;
+
+                if (printMoves) {
+                    out.println(solver.moves());
+                } else {
+                    for (Board board : solver.solution())
+                        out.println(board);
+                }
+
+                out.println("Minimum number of moves = " + solver.moveCount());
+//                System.out.println("Time taken: " + elapsedTime);
+            }
         }
-
-
+        out.flush();
     }
 }
-
-
@@ -0,0 +1,56 @@
+package gna;
+
+/**
+ * Sum of the Manhattan distances between the tiles and their goal positions. The goal is the usual goal board,
+ * or any other target board, as used by the search backwards from the goal towards the initial board.
+ */
+public class ManhattanHeuristic implements Heuristic {
+
+    private final int[] targetIndex;    // tile -> row-major index in the target board, null for the goal board
+
+    public ManhattanHeuristic() {
+        targetIndex = null;
+    }
+
+    public ManhattanHeuristic(Board target) {
+        targetIndex = new int[target.getSize() * target.getSize()];
+        for (int i = 0; i < targetIndex.length; i++)
+            targetIndex[target.getTile(i)] = i;
+    }
+
+    public Heuristic towards(Board target) {
+        return new ManhattanHeuristic(target);
+    }
+
+    public int evaluate(BoardView board) {
+        int N = board.getSize();
+        int totalValue = 0;
+        for (int i = 0; i < N * N; i++) {
+            int value = board.getTile(i);
+            if (value != 0)
+                totalValue += targetDistance(N, value, i);
+        }
+        return totalValue;
+    }
+
+    public int update(BoardView board, int state, int tile, int from, int to) {
+        int N = board.getSize();
+        return state - targetDistance(N, tile, from) + targetDistance(N, tile, to);
+    }
+
+    // distance from index to the position of tile in the target board
+    private int targetDistance(int N, int tile, int index) {
+        if (targetIndex == null)
+            return distance(N, tile, index, tile - 1);
+        return distance(N, tile, index, targetIndex[tile]);
+    }
+
+    // Manhattan distance between row-major index and the goal position of tile on an N-by-N board
+    static int distance(int N, int tile, int index) {
+        return distance(N, tile, index, tile - 1);
+    }
+
+    private static int distance(int N, int tile, int index, int target) {
+        return Math.abs(index / N - target / N) + Math.abs(index % N - target % N);
+    }
+}
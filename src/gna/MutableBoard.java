@@ -0,0 +1,42 @@
+package gna;
+
+/**
+ * A board that is modified in place, used by the depth-first searches of Solver so that no Board has to be
+ * allocated per visited state.
+ */
+final class MutableBoard implements BoardView {
+
+    private final int N;
+    private final int[] tiles;
+    private int zeroIndex;
+
+    MutableBoard(Board board) {
+        N = board.getSize();
+        tiles = new int[N * N];
+        for (int i = 0; i < N * N; i++)
+            tiles[i] = board.getTile(i);
+        zeroIndex = board.getZeroIndex();
+    }
+
+    public int getSize() {
+        return N;
+    }
+
+    public int getTile(int index) {
+        return tiles[index];
+    }
+
+    public int getZeroIndex() {
+        return zeroIndex;
+    }
+
+    // slide the tile at row-major index "to" into the empty spot and return the old index of the empty tile,
+    // so move(returned index) undoes this move
+    int move(int to) {
+        int from = zeroIndex;
+        tiles[from] = tiles[to];
+        tiles[to] = 0;
+        zeroIndex = to;
+        return from;
+    }
+}
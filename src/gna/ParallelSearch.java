@@ -0,0 +1,253 @@
+package gna;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash distributed A*: every board state is owned by one worker thread, chosen by its hash code. A worker keeps
+ * the closed set and the open list of the states it owns, and sends the successors it generates for other states
+ * to their owner through a lock-free queue, so duplicate detection never needs a lock.
+ * <p>
+ * When a worker takes a goal board from its open list it becomes the best solution found so far, but the search
+ * goes on until no worker has a board left with a priority below the length of that solution: only then is it
+ * known to be the shortest. This is the case once every worker is idle and no board is on its way to another
+ * worker, which is tracked by a single counter of busy workers plus boards in transit.
+ * <p>
+ * With SearchLimits every worker adds its expansions to a shared counter every SearchLimits.CHECK_INTERVAL
+ * expansions and checks the limits against it, so the node limit is exceeded by at most that many expansions per
+ * worker.
+ * <p>
+ * An idle worker spins briefly, then parks for increasing periods, so the idle cores are free at the end of a
+ * search. A worker that sends a board to an idle worker wakes it.
+ */
+final class ParallelSearch {
+
+    private static final int IDLE_SPINS = 64;
+    private static final long MIN_PARK_NANOS = 1_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final Heuristic heuristic;
+    private final boolean timed;        // measure the time spent in the heuristic
+    private final Worker[] workers;
+    // busy workers + boards sent but not yet added to the open list of their owner; the search ends at 0
+    private final AtomicInteger active;
+    private final Object solutionLock = new Object();
+    private volatile int bestMoves = Integer.MAX_VALUE;
+    private Board bestSolution;
+    private volatile Throwable failure;
+    private final SearchLimits limits;
+    private final AtomicLong nodesExpanded = new AtomicLong();     // only counted with limits
+    private volatile SearchOutcome stopped;                         // the limit that was reached
+
+    ParallelSearch(Heuristic heuristic, int threads, boolean timed, SearchLimits limits) {
+        this.heuristic = heuristic;
+        this.timed = timed;
+        this.limits = limits;
+        this.workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++)
+            workers[i] = new Worker();
+        this.active = new AtomicInteger(workers.length);
+    }
+
+    // returns the goal board of a shortest solution, linked to initial through its previous boards. When a limit is
+    // reached it returns the best solution found so far if there is one, otherwise the closest board to the goal.
+    Board search(Board initial) {
+        initial.setHeuristicState(heuristic.evaluate(initial));
+        workers[owner(initial)].receive(initial);
+
+        Thread[] threads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            threads[i] = new Thread(workers[i], "parallel-search-" + i);
+            workers[i].thread = threads[i];
+            threads[i].start();
+        }
+        // an interrupt cancels the search like SearchLimits.cancel(), but the workers are still joined before the
+        // partial result is returned
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stopped = SearchOutcome.CANCELLED;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new IllegalStateException(failure);
+        if (stopped == null || bestSolution != null)
+            return bestSolution;
+        Worker closest = workers[0];
+        for (Worker worker : workers) {
+            if (worker.closestPriority < closest.closestPriority)
+                closest = worker;
+        }
+        return closest.closestBoard == null ? initial : closest.closestBoard;
+    }
+
+    SearchOutcome getOutcome() {
+        return stopped == null ? SearchOutcome.SOLVED : stopped;
+    }
+
+    // adds the counters of all workers to stats
+    void addStats(SearchStats stats) {
+        for (Worker worker : workers)
+            stats.add(worker.stats);
+    }
+
+    private int owner(Board board) {
+        return (board.hashCode() & Integer.MAX_VALUE) % workers.length;
+    }
+
+    private final class Worker implements Runnable {
+        private final BucketQueue queue = new BucketQueue();
+        private final Map<Board, Board> bestBoards = new HashMap<Board, Board>();
+        private final Queue<Board> inbox = new ConcurrentLinkedQueue<Board>();
+        private final SearchStats stats = new SearchStats();
+        private Board closestBoard;         // with limits: the expanded board with the lowest priority
+        private int closestPriority = Integer.MAX_VALUE;
+        private Thread thread;
+        private volatile boolean idle;      // parked or about to park in waitForWork()
+
+        public void run() {
+            try {
+                while (failure == null && stopped == null) {
+                    for (Board board = inbox.poll(); board != null; board = inbox.poll()) {
+                        receive(board);
+                        active.decrementAndGet();
+                    }
+                    Board board = next();
+                    if (board == null) {
+                        if (!waitForWork())
+                            return;
+                    } else if (board.isGoal()) {
+                        offerSolution(board);
+                    } else {
+                        expand(board);
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        // a board owned by this worker: keep it if it improves the number of moves to its state
+        void receive(Board board) {
+            Board known = bestBoards.get(board);
+            if (known != null && known.getMoves() <= board.getMoves()) {
+                stats.pruned();
+                return;
+            }
+            bestBoards.put(board, board);
+            int h = heuristic.value(board.getHeuristicState());
+            queue.add(board, board.getMoves() + h, h);
+            stats.openListSize(queue.size());
+            stats.retainedBoards(bestBoards.size());
+        }
+
+        // board with the lowest priority that can still lead to a shorter solution, or null
+        private Board next() {
+            while (!queue.isEmpty()) {
+                Board board = queue.poll();
+                if (bestBoards.get(board) != board) {
+                    stats.pruned();
+                    continue;
+                }
+                int priority = board.getMoves() + heuristic.value(board.getHeuristicState());
+                if (priority < bestMoves) {
+                    stats.bound(priority);
+                    return board;
+                }
+            }
+            return null;
+        }
+
+        private void expand(Board board) {
+            stats.expanded();
+            if (limits != null)
+                checkLimits(board);
+            int zero = board.getZeroIndex();
+            int state = board.getHeuristicState();
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                int from = board.successorIndex(direction);
+                if (from < 0)
+                    continue;
+                Board neighbor = board.successor(from);
+                stats.generated(1);
+                long start = timed ? System.nanoTime() : 0;
+                neighbor.setHeuristicState(heuristic.update(neighbor, state, neighbor.getTile(zero), from, zero));
+                if (timed)
+                    stats.heuristicTime(System.nanoTime() - start);
+                Worker owner = workers[owner(neighbor)];
+                if (owner == this) {
+                    receive(neighbor);
+                } else {
+                    active.incrementAndGet();
+                    owner.inbox.add(neighbor);
+                    if (owner.idle)
+                        LockSupport.unpark(owner.thread);
+                }
+            }
+        }
+
+        // keeps track of the closest board to the goal and stops all workers when a limit is reached
+        private void checkLimits(Board board) {
+            int h = heuristic.value(board.getHeuristicState());
+            if (h < closestPriority) {
+                closestPriority = h;
+                closestBoard = board;
+            }
+            if ((stats.getNodesExpanded() & (SearchLimits.CHECK_INTERVAL - 1)) == 0) {
+                SearchOutcome limit = limits.check(nodesExpanded.addAndGet(SearchLimits.CHECK_INTERVAL), stats);
+                if (limit != null)
+                    stopped = limit;
+            }
+        }
+
+        // idle until a board arrives (returns true) or every worker is idle with nothing in transit (returns false)
+        private boolean waitForWork() {
+            active.decrementAndGet();
+            long parkNanos = MIN_PARK_NANOS;
+            for (int spins = 0; failure == null && stopped == null; spins++) {
+                if (!inbox.isEmpty()) {
+                    active.incrementAndGet();
+                    return true;
+                }
+                if (active.get() == 0)
+                    return false;
+                if (spins < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    // the inbox is checked again after idle is set, so a board sent in between is not missed; the
+                    // end of the search and a limit are noticed within MAX_PARK_NANOS
+                    idle = true;
+                    if (inbox.isEmpty())
+                        LockSupport.parkNanos(this, parkNanos);
+                    idle = false;
+                    parkNanos = Math.min(2 * parkNanos, MAX_PARK_NANOS);
+                }
+            }
+            return false;
+        }
+    }
+
+    private void offerSolution(Board goal) {
+        synchronized (solutionLock) {
+            if (goal.getMoves() < bestMoves) {
+                bestSolution = goal;
+                bestMoves = goal.getMoves();
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package gna;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Disjoint additive pattern database heuristic.
+ * <p>
+ * The tiles are split into disjoint groups. For every group a table holds, for every placement of its tiles,
+ * the number of moves of those tiles needed to bring them to their goal positions. Tiles of other groups are
+ * ignored and the empty tile may be anywhere, so each move of a tile is counted in exactly one table and the sum
+ * of the looked up values never overestimates the number of moves left. The tables are computed with a
+ * breadth-first search backwards from the goal and stored in a binary file that is memory-mapped when loaded.
+ * <p>
+ * Transposing a board and relabeling its tiles (see Board.transposed()) does not change its distance to the goal,
+ * so the tables are also read for the transposed board. A group whose transposed tiles form another group shares the
+ * table of that group, read on the transposed board, and is neither built nor stored. If the partition does not map
+ * onto itself, the estimate is the larger of the sums for the board and for its transposed board; both are kept in
+ * the state, the first in the low and the second in the high 16 bits.
+ */
+public class PatternDatabase implements Heuristic {
+
+    private static final int MAGIC = 0x50444231;      // "PDB1"
+    private static final int UNVISITED = 0xFF;
+
+    private final int N;
+    private final int[][] groups;
+    private final ByteBuffer[] tables;
+    private final int[] groupOf;        // tile -> index of its group, -1 if it is in none
+    private final int[] mirrorOf;       // group -> index of the group of its transposed tiles, -1 if there is none
+    private final boolean mirrored;     // does the estimate also sum the tables for the transposed board?
+    // scratch placement of a group, one per thread since solvers on several threads share the heuristic
+    private final ThreadLocal<int[]> placements;
+
+    // tables[g] is null if group g shares the table of group mirrorOf[g]
+    private PatternDatabase(int N, int[][] groups, ByteBuffer[] tables) {
+        this.N = N;
+        this.groups = groups;
+        this.tables = tables;
+        groupOf = groupOf(N, groups);
+        mirrorOf = mirrorOf(N, groups);
+        boolean symmetric = true;
+        for (int mirror : mirrorOf)
+            symmetric &= mirror >= 0;
+        mirrored = !symmetric;
+        int largest = 0;
+        for (int[] group : groups)
+            largest = Math.max(largest, group.length);
+        int size = largest;
+        placements = ThreadLocal.withInitial(() -> new int[size]);
+    }
+
+    private static int[] groupOf(int N, int[][] groups) {
+        int[] groupOf = new int[N * N];
+        Arrays.fill(groupOf, -1);
+        for (int g = 0; g < groups.length; g++) {
+            for (int tile : groups[g])
+                groupOf[tile] = g;
+        }
+        return groupOf;
+    }
+
+    private static int[] mirrorOf(int N, int[][] groups) {
+        int[] groupOf = groupOf(N, groups);
+        int[] mirrorOf = new int[groups.length];
+        for (int g = 0; g < groups.length; g++) {
+            int mirror = groupOf[Board.transposeTile(N, groups[g][0])];
+            for (int tile : groups[g]) {
+                if (mirror >= 0 && groupOf[Board.transposeTile(N, tile)] != mirror)
+                    mirror = -1;
+            }
+            if (mirror >= 0 && groups[mirror].length != groups[g].length)
+                mirror = -1;
+            mirrorOf[g] = mirror;
+        }
+        return mirrorOf;
+    }
+
+    // does group g share the table of its mirror group, which comes before it?
+    private static boolean shared(int g, int[] mirrorOf) {
+        return mirrorOf[g] >= 0 && mirrorOf[g] < g;
+    }
+
+    /**
+     * Returns the partition used by default for N-by-N boards: 6-6-3 for 4x4 and 4-4 for 3x3 boards.
+     * See also symmetricGroups().
+     */
+    public static int[][] defaultGroups(int N) {
+        if (N == 4)
+            return new int[][]{{1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4}};
+        if (N == 3)
+            return new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}};
+        if (N == 2)
+            return new int[][]{{1, 2, 3}};
+        throw new IllegalArgumentException("No default pattern database for " + N + "x" + N + " boards");
+    }
+
+    /**
+     * Returns a 6-6-3 partition of the tiles of 4x4 boards that maps onto itself when the board is transposed: the
+     * tiles above the diagonal, the tiles below it, and the tiles on it. It needs half the memory of the default one.
+     */
+    public static int[][] symmetricGroups() {
+        return new int[][]{{2, 3, 4, 7, 8, 12}, {5, 9, 13, 10, 14, 15}, {1, 6, 11}};
+    }
+
+    /**
+     * Computes the tables for the given disjoint groups of tiles on N-by-N boards.
+     */
+    public static PatternDatabase build(int N, int[][] groups) {
+        boolean[] used = new boolean[N * N];
+        ByteBuffer[] tables = new ByteBuffer[groups.length];
+        for (int g = 0; g < groups.length; g++) {
+            for (int tile : groups[g]) {
+                if (tile <= 0 || tile >= N * N || used[tile])
+                    throw new IllegalArgumentException("Groups must be disjoint sets of tiles 1.." + (N * N - 1));
+                used[tile] = true;
+            }
+        }
+        int[] mirrorOf = mirrorOf(N, groups);
+        for (int g = 0; g < groups.length; g++) {
+            if (!shared(g, mirrorOf))
+                tables[g] = ByteBuffer.wrap(buildTable(N, groups[g]));
+        }
+        return new PatternDatabase(N, copy(groups), tables);
+    }
+
+    /**
+     * Loads the tables stored by save(). The file is memory-mapped, so the tables are not copied onto the heap.
+     */
+    public static PatternDatabase load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC)
+                throw new IOException(file + " is not a pattern database");
+            int N = buffer.getInt();
+            int[][] groups = new int[buffer.getInt()][];
+            for (int g = 0; g < groups.length; g++) {
+                groups[g] = new int[buffer.getInt()];
+                for (int i = 0; i < groups[g].length; i++)
+                    groups[g][i] = buffer.getInt();
+            }
+            ByteBuffer[] tables = new ByteBuffer[groups.length];
+            int[] mirrorOf = mirrorOf(N, groups);
+            int offset = buffer.position();
+            for (int g = 0; g < groups.length; g++) {
+                if (shared(g, mirrorOf))
+                    continue;
+                int length = tableSize(N * N, groups[g].length);
+                if (offset + length > buffer.capacity())
+                    throw new IOException(file + " is truncated");
+                ByteBuffer table = buffer.duplicate();
+                table.position(offset);
+                table.limit(offset + length);
+                tables[g] = table.slice();
+                offset += length;
+            }
+            return new PatternDatabase(N, groups, tables);
+        }
+    }
+
+    /**
+     * Loads the pattern database from file, or builds the default one for N-by-N boards and stores it in file first
+     * when the file does not exist yet.
+     */
+    public static PatternDatabase loadOrBuild(Path file, int N) throws IOException {
+        if (!Files.exists(file)) {
+            if (file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            build(N, defaultGroups(N)).save(file);
+        }
+        return load(file);
+    }
+
+    /**
+     * Writes the tables to file: a header with the board size and the groups, followed by one byte per placement.
+     * Shared tables are written once.
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(N);
+            out.writeInt(groups.length);
+            for (int[] group : groups) {
+                out.writeInt(group.length);
+                for (int tile : group)
+                    out.writeInt(tile);
+            }
+            for (ByteBuffer table : tables) {
+                if (table == null)
+                    continue;
+                for (int i = 0; i < table.capacity(); i++)
+                    out.write(table.get(i));
+            }
+        }
+    }
+
+    public int getSize() {
+        return N;
+    }
+
+    // sum over all groups of the moves needed to bring the tiles of the group home, and the same sum for the
+    // transposed board if the partition is not symmetric
+    public int evaluate(BoardView board) {
+        if (board.getSize() != N)
+            throw new IllegalArgumentException("Pattern database is for " + N + "x" + N + " boards");
+        int total = 0;
+        int transposedTotal = 0;
+        for (int g = 0; g < groups.length; g++) {
+            total += lookup(board, g, false);
+            if (mirrored)
+                transposedTotal += lookup(board, g, true);
+        }
+        return total | transposedTotal << 16;
+    }
+
+    // only the table of the group of the moved tile changes
+    public int update(BoardView board, int state, int tile, int from, int to) {
+        int total = state & 0xFFFF;
+        int g = groupOf[tile];
+        if (g >= 0)
+            total += change(board, g, tile, from, false);
+        if (!mirrored)
+            return total;
+        int transposedTotal = state >>> 16;
+        int transposedTile = Board.transposeTile(N, tile);
+        g = groupOf[transposedTile];
+        if (g >= 0)
+            transposedTotal += change(board, g, transposedTile, Board.transposeIndex(N, from), true);
+        return total | transposedTotal << 16;
+    }
+
+    public int value(int state) {
+        return Math.max(state & 0xFFFF, state >>> 16);
+    }
+
+    // table entry of group g for board, or for its transposed board
+    private int lookup(BoardView board, int g, boolean transposed) {
+        if (tables[g] == null) {
+            // the entry of group g is the entry of its mirror group for the transposed board
+            g = mirrorOf[g];
+            transposed = !transposed;
+        }
+        int[] placement = placements.get();
+        place(board, g, transposed, 0, placement);
+        return tables[g].get(rank(placement, groups[g].length, N * N)) & 0xFF;
+    }
+
+    // change in the table entry of group g for board, or for its transposed board, made by tile moving from index
+    // "from" to its cell on board (tile and from given for the board that is read). The board is scanned once for
+    // both entries.
+    private int change(BoardView board, int g, int tile, int from, boolean transposed) {
+        if (tables[g] == null) {
+            g = mirrorOf[g];
+            transposed = !transposed;
+            tile = Board.transposeTile(N, tile);
+            from = Board.transposeIndex(N, from);
+        }
+        int[] placement = placements.get();
+        int slot = place(board, g, transposed, tile, placement);
+        int k = groups[g].length;
+        int after = tables[g].get(rank(placement, k, N * N)) & 0xFF;
+        placement[slot] = from;
+        return after - (tables[g].get(rank(placement, k, N * N)) & 0xFF);
+    }
+
+    // fills placement with the cells of the tiles of group g on board, or on its transposed board, and returns the
+    // position of tile in the group (-1 if it is not in the group)
+    private int place(BoardView board, int g, boolean transposed, int tile, int[] placement) {
+        int[] group = groups[g];
+        int slot = -1;
+        for (int i = 0; i < N * N; i++) {
+            int value = board.getTile(i);
+            if (value == 0)
+                continue;
+            int cell = i;
+            if (transposed) {
+                value = Board.transposeTile(N, value);
+                cell = Board.transposeIndex(N, i);
+            }
+            if (groupOf[value] == g) {
+                for (int j = 0; j < group.length; j++) {
+                    if (group[j] == value) {
+                        placement[j] = cell;
+                        if (value == tile)
+                            slot = j;
+                    }
+                }
+            }
+        }
+        return slot;
+    }
+
+    // breadth-first search from the goal placement of the group: a tile of the group moves to an adjacent cell that
+    // is not taken by another tile of the group
+    private static byte[] buildTable(int N, int[] group) {
+        int cells = N * N;
+        int k = group.length;
+        byte[] table = new byte[tableSize(cells, k)];
+        Arrays.fill(table, (byte) UNVISITED);
+        int[] queue = new int[table.length];
+        int head = 0;
+        int tail = 0;
+
+        int[] placement = new int[k];
+        for (int i = 0; i < k; i++)
+            placement[i] = group[i] - 1;
+        int start = rank(placement, k, cells);
+        table[start] = 0;
+        queue[tail++] = start;
+
+        boolean[] occupied = new boolean[cells];
+        while (head < tail) {
+            int index = queue[head++];
+            int distance = table[index] & 0xFF;
+            unrank(index, placement, k, cells, occupied);
+
+            for (int i = 0; i < k; i++) {
+                int from = placement[i];
+                int[] targets = {from - N, from + N, from % N > 0 ? from - 1 : -1, from % N < N - 1 ? from + 1 : -1};
+                for (int to : targets) {
+                    if (to < 0 || to >= cells || occupied[to])
+                        continue;
+                    placement[i] = to;
+                    int next = rank(placement, k, cells);
+                    if ((table[next] & 0xFF) == UNVISITED) {
+                        table[next] = (byte) (distance + 1);
+                        queue[tail++] = next;
+                    }
+                }
+                placement[i] = from;
+            }
+        }
+        return table;
+    }
+
+    // number of placements of k distinct tiles on the given number of cells
+    private static int tableSize(int cells, int k) {
+        long size = 1;
+        for (int i = 0; i < k; i++)
+            size *= cells - i;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Group of " + k + " tiles is too large for " + cells + " cells");
+        return (int) size;
+    }
+
+    // index of a placement of k distinct cells: the i-th cell is numbered among the cells not used before it
+    private static int rank(int[] placement, int k, int cells) {
+        int index = 0;
+        for (int i = 0; i < k; i++) {
+            int smaller = 0;
+            for (int j = 0; j < i; j++) {
+                if (placement[j] < placement[i])
+                    smaller++;
+            }
+            index = index * (cells - i) + placement[i] - smaller;
+        }
+        return index;
+    }
+
+    // inverse of rank(), also marks the cells of the placement in used
+    private static void unrank(int index, int[] placement, int k, int cells, boolean[] used) {
+        for (int i = k - 1; i >= 0; i--) {
+            placement[i] = index % (cells - i);
+            index /= cells - i;
+        }
+        Arrays.fill(used, false);
+        for (int i = 0; i < k; i++) {
+            int cell = 0;
+            for (int free = placement[i]; used[cell] || free > 0; cell++) {
+                if (!used[cell])
+                    free--;
+            }
+            used[cell] = true;
+            placement[i] = cell;
+        }
+    }
+
+    private static int[][] copy(int[][] groups) {
+        int[][] result = new int[groups.length][];
+        for (int g = 0; g < groups.length; g++)
+            result[g] = groups[g].clone();
+        return result;
+    }
+
+    // builds the default pattern database for N-by-N boards: java gna.PatternDatabase N file
+    public static void main(String[] args) throws IOException {
+        int N = Integer.parseInt(args[0]);
+        long startTime = System.currentTimeMillis();
+        build(N, defaultGroups(N)).save(Paths.get(args[1]));
+        System.out.println("Pattern database written to " + args[1] + " in "
+                + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+    }
+}
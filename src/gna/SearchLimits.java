@@ -0,0 +1,82 @@
+package gna;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds on a Solver: a time limit, a maximum number of expanded boards and a ceiling on the heap in use, plus
+ * cooperative cancellation from another thread. A Solver that hits one of them stops with a partial result instead
+ * of searching on; see Solver.getOutcome().
+ * <p>
+ * The number of expanded boards is checked at every expansion, the other limits every CHECK_INTERVAL expansions,
+ * as reading the clock or the heap size costs more than expanding a board.
+ */
+public final class SearchLimits {
+
+    static final int CHECK_INTERVAL = 1 << 10;
+
+    private long timeLimitNanos = Long.MAX_VALUE;
+    private long maxNodesExpanded = Long.MAX_VALUE;
+    private long memoryCeiling = Long.MAX_VALUE;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Stops the search once it has run for the given time.
+     */
+    public SearchLimits setTimeLimit(long duration, TimeUnit unit) {
+        if (duration < 0)
+            throw new IllegalArgumentException("Time limit must not be negative");
+        timeLimitNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Stops the search once it has expanded the given number of boards.
+     */
+    public SearchLimits setMaxNodesExpanded(long maxNodesExpanded) {
+        if (maxNodesExpanded < 0)
+            throw new IllegalArgumentException("Maximum number of nodes must not be negative");
+        this.maxNodesExpanded = maxNodesExpanded;
+        return this;
+    }
+
+    /**
+     * Stops the search once the heap in use (Runtime.totalMemory() - Runtime.freeMemory()) exceeds the given number
+     * of bytes. As this includes garbage that was not collected yet, the ceiling should leave room below -Xmx.
+     */
+    public SearchLimits setMemoryCeiling(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("Memory ceiling must not be negative");
+        memoryCeiling = bytes;
+        return this;
+    }
+
+    /**
+     * Stops the search the next time it checks its limits. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // the limit reached after nodesExpanded expansions by a search that started at stats, or null to go on.
+    // Only the node limit is checked unless nodesExpanded is a multiple of CHECK_INTERVAL.
+    SearchOutcome check(long nodesExpanded, SearchStats stats) {
+        if (nodesExpanded >= maxNodesExpanded)
+            return SearchOutcome.NODE_LIMIT;
+        if ((nodesExpanded & (CHECK_INTERVAL - 1)) != 0)
+            return null;
+        if (cancelled || Thread.currentThread().isInterrupted())
+            return SearchOutcome.CANCELLED;
+        if (stats.getElapsedNanos() >= timeLimitNanos)
+            return SearchOutcome.TIME_LIMIT;
+        if (memoryCeiling != Long.MAX_VALUE) {
+            Runtime runtime = Runtime.getRuntime();
+            if (runtime.totalMemory() - runtime.freeMemory() > memoryCeiling)
+                return SearchOutcome.MEMORY_LIMIT;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package gna;
+
+import java.util.List;
+
+/**
+ * Receives the statistics of a Solver while it searches, on the thread that runs the search. A listener should
+ * return quickly: the search waits for it.
+ */
+public interface SearchListener {
+
+    /**
+     * Called every few thousand expanded boards (not for PARALLEL_A_STAR, which only reports when it finishes).
+     */
+    default void progress(SearchStats stats) {
+    }
+
+    /**
+     * Called when the bound on moves + priority goes up: A* expands boards with a higher f than before, or IDA*
+     * starts a new iteration.
+     */
+    default void boundRaised(int bound, SearchStats stats) {
+    }
+
+    /**
+     * Called by SearchMode.ANYTIME_A_STAR with every better solution it finds, from the initial board to the goal.
+     *
+     * @param suboptimality the length of solution is at most this many times the length of a shortest solution
+     */
+    default void solutionImproved(List<Board> solution, double suboptimality, SearchStats stats) {
+    }
+
+    /**
+     * Called once the search has found the solution.
+     */
+    default void finished(SearchStats stats) {
+    }
+}
@@ -0,0 +1,35 @@
+package gna;
+
+/**
+ * The search algorithm a Solver uses, next to its priority function.
+ */
+public enum SearchMode {
+    /**
+     * A* with a closed set: fewest expansions, but every generated board is kept in memory.
+     */
+    A_STAR,
+    /**
+     * Iterative deepening A*: repeated depth-first searches with an increasing bound on moves + priority,
+     * on a single board that is modified in place. Memory is linear in the length of the solution.
+     */
+    IDA_STAR,
+    /**
+     * Hash distributed A* on one thread per processor: every thread owns the board states with a given hash and
+     * sends the boards it generates to their owner. Finds a shortest solution, like A_STAR.
+     */
+    PARALLEL_A_STAR,
+    /**
+     * Bidirectional A*: a forward search from the initial board and a backward search from the goal board that stop
+     * once the shortest path through a state reached by both is known. Finds a shortest solution, like A_STAR.
+     * The backward search needs the heuristic towards the initial board, which Hamming, Manhattan and linear
+     * conflicts support but walking distance and pattern databases do not: Solver rejects those.
+     */
+    BIDIRECTIONAL_A_STAR,
+    /**
+     * Anytime repairing A*: weighted A* searches with a decreasing weight that reuse the work of the previous one.
+     * A first solution is found quickly and improved until it is the shortest; every improvement is passed to
+     * SearchListener.solutionImproved() with its bound on the suboptimality. Meant to be used with SearchLimits
+     * on boards too hard for A_STAR.
+     */
+    ANYTIME_A_STAR
+}
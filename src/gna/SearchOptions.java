@@ -0,0 +1,51 @@
+package gna;
+
+/**
+ * The optional settings of a Solver: a listener for its progress, limits on the search and a cache of solutions.
+ * None is set by default; the setters return the options, so they can be chained:
+ * new Solver(board, heuristic, mode, new SearchOptions().setLimits(limits).setCache(cache)).
+ */
+public final class SearchOptions {
+
+    private SearchListener listener;
+    private SearchLimits limits;
+    private SolutionCache cache;
+
+    /**
+     * Reports the progress of the search to listener, see SearchListener. The heuristic is only timed with one.
+     */
+    public SearchOptions setListener(SearchListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Bounds the search, see SearchLimits.
+     */
+    public SearchOptions setLimits(SearchLimits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Uses the solutions in cache, which may be shared between solvers: a cached solution of the initial board is
+     * returned without searching, and A* completes its solution from the cache as soon as it reaches a cached board
+     * state. A shortest solution that is found is added to the cache.
+     */
+    public SearchOptions setCache(SolutionCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public SearchListener getListener() {
+        return listener;
+    }
+
+    public SearchLimits getLimits() {
+        return limits;
+    }
+
+    public SolutionCache getCache() {
+        return cache;
+    }
+}
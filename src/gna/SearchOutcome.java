@@ -0,0 +1,27 @@
+package gna;
+
+/**
+ * Why a Solver stopped searching.
+ */
+public enum SearchOutcome {
+    /**
+     * A shortest solution was found.
+     */
+    SOLVED,
+    /**
+     * The time limit of the SearchLimits passed.
+     */
+    TIME_LIMIT,
+    /**
+     * The maximum number of expanded boards of the SearchLimits was reached.
+     */
+    NODE_LIMIT,
+    /**
+     * The heap in use grew beyond the memory ceiling of the SearchLimits.
+     */
+    MEMORY_LIMIT,
+    /**
+     * The search was cancelled through its SearchLimits, or the solving thread was interrupted.
+     */
+    CANCELLED
+}
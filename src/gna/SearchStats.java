@@ -0,0 +1,179 @@
+package gna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counters of a search, updated by the Solver while it runs. A SearchListener receives the live object; it should
+ * only be read during the call, or copied with snapshot().
+ * <p>
+ * The counters themselves are plain increments. The time spent in the heuristic is only measured when the Solver
+ * has a SearchListener, because reading the clock around every evaluation would cost more than the evaluation.
+ */
+public final class SearchStats {
+
+    // a SearchListener is sampled every time this many more boards were expanded
+    static final int SAMPLE_INTERVAL = 1 << 14;
+
+    private long nodesExpanded = 0;
+    private long nodesGenerated = 0;
+    private long duplicatesPruned = 0;
+    private int peakOpenListSize = 0;
+    private int peakRetainedBoards = 0;
+    private long heuristicNanos = 0;
+    private final List<Integer> bounds = new ArrayList<Integer>();
+    private final long startNanos;
+    private long endNanos = -1;
+
+    SearchStats() {
+        startNanos = System.nanoTime();
+    }
+
+    private SearchStats(SearchStats stats) {
+        nodesExpanded = stats.nodesExpanded;
+        nodesGenerated = stats.nodesGenerated;
+        duplicatesPruned = stats.duplicatesPruned;
+        peakOpenListSize = stats.peakOpenListSize;
+        peakRetainedBoards = stats.peakRetainedBoards;
+        heuristicNanos = stats.heuristicNanos;
+        bounds.addAll(stats.bounds);
+        startNanos = stats.startNanos;
+        endNanos = stats.endNanos < 0 ? System.nanoTime() : stats.endNanos;
+    }
+
+    /**
+     * Returns a copy that no longer changes, with the elapsed time up to now if the search is still running.
+     */
+    public SearchStats snapshot() {
+        return new SearchStats(this);
+    }
+
+    /**
+     * Returns the number of boards whose successors were generated. IDA* counts a board again in every iteration
+     * that reaches it.
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Returns the number of successors generated, including the ones that were pruned as duplicates.
+     */
+    public long getNodesGenerated() {
+        return nodesGenerated;
+    }
+
+    /**
+     * Returns the number of generated boards that were discarded because their state was already reached
+     * with at most the same number of moves.
+     */
+    public long getDuplicatesPruned() {
+        return duplicatesPruned;
+    }
+
+    /**
+     * Returns the largest number of boards on the open list(s) at once. For PARALLEL_A_STAR this is the sum of the
+     * peaks of the threads.
+     */
+    public int getPeakOpenListSize() {
+        return peakOpenListSize;
+    }
+
+    /**
+     * Returns the largest number of boards the search kept in memory at once: the closed set of A*, or the depth
+     * of the path for IDA*.
+     */
+    public int getPeakRetainedBoards() {
+        return peakRetainedBoards;
+    }
+
+    /**
+     * Returns the time spent evaluating the heuristic in nanoseconds, or 0 if the Solver had no SearchListener.
+     */
+    public long getHeuristicNanos() {
+        return heuristicNanos;
+    }
+
+    /**
+     * Returns the successive bounds on moves + priority: the f values at which A* started expanding, or the bounds
+     * of the iterations of IDA*.
+     */
+    public List<Integer> getBounds() {
+        return Collections.unmodifiableList(bounds);
+    }
+
+    /**
+     * Returns the time since the search started, up to its end once it has finished.
+     */
+    public long getElapsedNanos() {
+        return (endNanos < 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    public double getExpansionsPerSecond() {
+        long nanos = getElapsedNanos();
+        return nanos == 0 ? 0 : nodesExpanded * 1e9 / nanos;
+    }
+
+    // counts an expanded board, returns true when a SearchListener is due to be sampled
+    boolean expanded() {
+        return (++nodesExpanded & (SAMPLE_INTERVAL - 1)) == 0;
+    }
+
+    void generated(int count) {
+        nodesGenerated += count;
+    }
+
+    void pruned() {
+        duplicatesPruned++;
+    }
+
+    void openListSize(int size) {
+        if (size > peakOpenListSize)
+            peakOpenListSize = size;
+    }
+
+    void retainedBoards(int count) {
+        if (count > peakRetainedBoards)
+            peakRetainedBoards = count;
+    }
+
+    void heuristicTime(long nanos) {
+        heuristicNanos += nanos;
+    }
+
+    // returns true if bound is higher than the last one
+    boolean bound(int bound) {
+        if (!bounds.isEmpty() && bounds.get(bounds.size() - 1) >= bound)
+            return false;
+        bounds.add(bound);
+        return true;
+    }
+
+    // adds the counters of a search that ran alongside this one, such as a thread of PARALLEL_A_STAR
+    void add(SearchStats stats) {
+        nodesExpanded += stats.nodesExpanded;
+        nodesGenerated += stats.nodesGenerated;
+        duplicatesPruned += stats.duplicatesPruned;
+        peakOpenListSize += stats.peakOpenListSize;
+        peakRetainedBoards += stats.peakRetainedBoards;
+        heuristicNanos += stats.heuristicNanos;
+        for (int bound : stats.bounds) {
+            if (!bounds.contains(bound))
+                bounds.add(bound);
+        }
+        Collections.sort(bounds);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d expanded, %d generated, %d duplicates pruned, peak open list %d, "
+                        + "peak retained %d, %.3f ms (%.0f expansions/s), heuristic %.3f ms, bounds %s",
+                nodesExpanded, nodesGenerated, duplicatesPruned, peakOpenListSize, peakRetainedBoards,
+                getElapsedNanos() / 1e6, getExpansionsPerSecond(), heuristicNanos / 1e6, bounds);
+    }
+}
@@ -0,0 +1,263 @@
+package gna;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact distances to the goal learned from earlier solutions, shared between solvers.
+ * <p>
+ * For every board state on a shortest solution the cache keeps the number of moves left and the position the
+ * empty tile moves to next, so a cached solution from any of those states is rebuilt without searching. A* also
+ * uses the cached distances as a perfect heuristic: once it takes a board with a known distance from its open list,
+ * the rest of the solution is read from the cache.
+ * <p>
+ * A board and its transposed board (see Board.transposed()) are the same distance from the goal, so the cache keys
+ * its states by their canonical form: a solution stored for one also serves the other, with every move transposed.
+ * <p>
+ * The cache holds at most a fixed number of states and evicts approximately the least recently used ones. All
+ * methods may be called from several threads: the states are spread over segments that each have their own lock, so
+ * solvers that look up distances on every expansion rarely wait for each other.
+ */
+public class SolutionCache {
+
+    private static final int MAGIC = 0x53434831;      // "SCH1"
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    // distance to the goal and the index the empty tile moves to next (-1 at the goal), on the canonical board
+    private static final class Entry {
+        final int distance;
+        final int next;
+        long used;                  // the clock when the entry was last used, written under the lock of its segment
+
+        Entry(int distance, int next) {
+            this.distance = distance;
+            this.next = next;
+        }
+    }
+
+    // the states of one segment, least recently used first, guarded by the lock of the segment
+    private static final class Segment {
+        final Map<Board, Entry> entries = new LinkedHashMap<Board, Entry>(16, 0.75f, true);
+    }
+
+    private final int capacity;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicInteger size = new AtomicInteger();
+    // advanced by every store; a lookup stamps its entry with the current value, so stamps are ordered by use
+    // between segments up to the lookups since the last store
+    private final AtomicLong clock = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates an empty cache for at most capacity board states.
+     */
+    public SolutionCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment();
+    }
+
+    /**
+     * Returns a shortest solution from initial to the goal if the cache knows one, otherwise null.
+     */
+    public List<Board> solution(Board initial) {
+        Board goal = follow(initial.copy());
+        if (goal == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return Solver.path(goal);
+    }
+
+    // follows the cached moves from board to the goal and returns the goal board, linked to board through its
+    // previous boards, or null if board is not cached or a state on the way was evicted
+    Board follow(Board board) {
+        Board canonical = board.canonical();
+        Entry entry = get(canonical);
+        while (entry != null && entry.next >= 0) {
+            board = board.successor(canonical == board ? entry.next : Board.transposeIndex(board.getSize(), entry.next));
+            canonical = board.canonical();
+            entry = get(canonical);
+        }
+        return entry == null ? null : board;
+    }
+
+    /**
+     * Returns the number of moves of a shortest solution from board, or -1 if it is not cached.
+     */
+    public int distance(Board board) {
+        Entry entry = get(board.canonical());
+        return entry == null ? -1 : entry.distance;
+    }
+
+    /**
+     * Stores a shortest solution: the distance to the goal of every board on it, and the next move from each.
+     */
+    public void put(List<Board> solution) {
+        Board last = solution.get(solution.size() - 1);
+        if (!last.isGoal())
+            throw new IllegalArgumentException("Solution does not end in the goal");
+        for (int i = 0; i < solution.size(); i++) {
+            int next = i + 1 < solution.size() ? solution.get(i + 1).getZeroIndex() : -1;
+            put(solution.get(i), new Entry(solution.size() - 1 - i, next));
+        }
+    }
+
+    // stores entry, given for board, under the canonical form of board
+    private void put(Board board, Entry entry) {
+        Board canonical = board.canonical();
+        if (canonical == board)
+            store(board.copy(), entry);
+        else
+            store(canonical, new Entry(entry.distance,
+                    entry.next < 0 ? entry.next : Board.transposeIndex(board.getSize(), entry.next)));
+    }
+
+    private Segment segment(Board canonical) {
+        // the high bits of the mixed hash code, since the maps of the segments index by the low bits
+        return segments[(canonical.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    // the entry of a canonical board, or null
+    private Entry get(Board canonical) {
+        Segment segment = segment(canonical);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(canonical);
+            if (entry != null)
+                entry.used = clock.get();
+            return entry;
+        }
+    }
+
+    private void store(Board canonical, Entry entry) {
+        Segment segment = segment(canonical);
+        synchronized (segment) {
+            entry.used = clock.incrementAndGet();
+            if (segment.entries.put(canonical, entry) == null)
+                size.incrementAndGet();
+        }
+        if (size.get() > capacity) {
+            synchronized (evictionLock) {
+                while (size.get() > capacity)
+                    evict();
+            }
+        }
+    }
+
+    // removes the least recently used entry of the segment whose least recently used entry is the oldest
+    private void evict() {
+        Segment oldest = null;
+        long oldestUsed = Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                if (!segment.entries.isEmpty() && segment.entries.values().iterator().next().used < oldestUsed) {
+                    oldest = segment;
+                    oldestUsed = segment.entries.values().iterator().next().used;
+                }
+            }
+        }
+        synchronized (oldest) {
+            Iterator<Entry> eldest = oldest.entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            size.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of calls to solution() that found a cached solution.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of calls to solution() that found none.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Writes the cached states to file, least recently used first: per state the board size, the tiles (one byte
+     * each, or two for boards of more than 256 tiles), the distance and the next move.
+     */
+    public void save(Path file) throws IOException {
+        List<Map.Entry<Board, Entry>> snapshot = new ArrayList<Map.Entry<Board, Entry>>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                snapshot.addAll(segment.entries.entrySet());
+            }
+        }
+        snapshot.sort(Comparator.comparingLong(entry -> entry.getValue().used));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Board, Entry> entry : snapshot) {
+                Board board = entry.getKey();
+                int N = board.getSize();
+                out.writeShort(N);
+                for (int i = 0; i < N * N; i++) {
+                    if (N * N > 256)
+                        out.writeShort(board.getTile(i));
+                    else
+                        out.writeByte(board.getTile(i));
+                }
+                out.writeInt(entry.getValue().distance);
+                out.writeInt(entry.getValue().next);
+            }
+        }
+    }
+
+    /**
+     * Reads a cache written by save(), keeping the most recently used states if there are more than capacity.
+     */
+    public static SolutionCache load(Path file, int capacity) throws IOException {
+        SolutionCache cache = new SolutionCache(capacity);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a solution cache");
+            int count = in.readInt();
+            for (int c = 0; c < count; c++) {
+                int N = in.readUnsignedShort();
+                int[][] tiles = new int[N][N];
+                for (int i = 0; i < N * N; i++)
+                    tiles[i / N][i % N] = N * N > 256 ? in.readUnsignedShort() : in.readUnsignedByte();
+                int distance = in.readInt();
+                int next = in.readInt();
+                cache.put(new Board(tiles), new Entry(distance, next));
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Loads the cache from file if it exists, otherwise returns an empty one.
+     */
+    public static SolutionCache loadIfExists(Path file, int capacity) throws IOException {
+        return Files.exists(file) ? load(file, capacity) : new SolutionCache(capacity);
+    }
+}
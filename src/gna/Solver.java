@@ -6,7 +6,28 @@ import java.util.*;
 
 public class Solver {
 
-    public List<Board> solutionBoards = new ArrayList<Board>();
+    private static final int FOUND = -1;
+    private static final int STOPPED = -2;
+
+    private final Board initial;
+    // the solution is kept as its last board, linked to the initial board through its previous boards, or by IDA* as
+    // the index the empty tile moves to in every move; the list of boards is only built when solution() is called
+    private Board last;
+    private int[] zeroPath;
+    private List<Board> solutionBoards;
+    private int remainingEstimate;
+    private final Heuristic heuristic;
+    private final SearchListener listener;      // null if there is none: the heuristic is then not timed
+    private final SearchStats stats = new SearchStats();
+    private final SearchLimits limits;          // null if the search is not bounded
+    private final SolutionCache cache;          // null if there is none
+    private SearchOutcome outcome = SearchOutcome.SOLVED;
+    private double suboptimality = 1;
+    // with limits: the expanded board with the lowest priority, returned when a limit is reached
+    private Board bestBoard;
+    private int[] bestPath;                     // IDA*: the moves leading to that board
+    private int bestPriority = Integer.MAX_VALUE;
+    private int foundMoves;                     // IDA*: the number of moves to the goal
 
     /**
      * Finds a solution to the initial board.
@@ -17,83 +38,388 @@ public class Solver {
     // Use the given priority function (either PriorityFunc.HAMMING
     // or PriorityFunc.MANHATTAN) to solve the puzzle.
     public Solver(Board initial, PriorityFunc priority) {
-        Board solution = null;
-        int moves = 0;
-        if (priority == PriorityFunc.HAMMING) {
-            PriorityQueue<Board> queue = new PriorityQueue<Board>(new HammingComparator());
-            queue.add(initial);
-            while (queue.peek().hamming() != 0) {
-                Board currentMinBoard = queue.poll();            // board with min. priority
-                Collection<Board> neighbors = currentMinBoard.neighbors();
-                for (Board board : neighbors) {
-                    if (currentMinBoard.getPreviousBoard() == null || !(currentMinBoard.getPreviousBoard().equals(board))) {
-                        Board neighbor = new Board(board.getTiles(), currentMinBoard);
-                        queue.add(neighbor);
-                    }
+        this(initial, priority, SearchMode.A_STAR);
+    }
+
+    /**
+     * Finds a solution to the initial board with the given search algorithm.
+     *
+     * @param priority is either PriorityFunc.HAMMING or PriorityFunc.MANHATTAN
+     * @param mode     is SearchMode.A_STAR, SearchMode.IDA_STAR, SearchMode.PARALLEL_A_STAR,
+     *                 SearchMode.BIDIRECTIONAL_A_STAR or SearchMode.ANYTIME_A_STAR
+     */
+    public Solver(Board initial, PriorityFunc priority, SearchMode mode) {
+        this(initial, heuristic(priority), mode);
+    }
+
+    /**
+     * Finds a solution to the initial board using the given heuristic as priority function, such as a
+     * LinearConflictHeuristic, a WalkingDistanceHeuristic or a PatternDatabase.
+     * The initial board and the heuristic are only read, so several solvers can run on them concurrently.
+     *
+     * @param heuristic must never overestimate the number of moves left for the solution to be the shortest
+     * @param mode      is SearchMode.A_STAR, SearchMode.IDA_STAR, SearchMode.PARALLEL_A_STAR,
+     *                  SearchMode.BIDIRECTIONAL_A_STAR or SearchMode.ANYTIME_A_STAR
+     */
+    public Solver(Board initial, Heuristic heuristic, SearchMode mode) {
+        this(initial, heuristic, mode, new SearchOptions());
+    }
+
+    /**
+     * Finds a solution to the initial board like Solver(initial, heuristic, mode), reporting the progress of the
+     * search to listener.
+     *
+     * @param listener is sampled while the search runs, may be null
+     */
+    public Solver(Board initial, Heuristic heuristic, SearchMode mode, SearchListener listener) {
+        this(initial, heuristic, mode, listener, null);
+    }
+
+    /**
+     * Searches for a solution to the initial board like Solver(initial, heuristic, mode, listener), but stops when
+     * one of the limits is reached. getOutcome() then tells which one, and solution() leads to the board with the
+     * lowest priority that was expanded instead of to the goal.
+     *
+     * @param listener is sampled while the search runs, may be null
+     * @param limits   bound the search, may be null
+     */
+    public Solver(Board initial, Heuristic heuristic, SearchMode mode, SearchListener listener, SearchLimits limits) {
+        this(initial, heuristic, mode, new SearchOptions().setListener(listener).setLimits(limits));
+    }
+
+    /**
+     * Finds a solution to the initial board like Solver(initial, heuristic, mode), with the listener, the limits and
+     * the cache of solutions set in options; see SearchOptions.
+     */
+    public Solver(Board initial, Heuristic heuristic, SearchMode mode, SearchOptions options) {
+        this.initial = initial;
+        this.heuristic = heuristic;
+        this.listener = options.getListener();
+        this.limits = options.getLimits();
+        this.cache = options.getCache();
+        List<Board> cached = cache == null ? null : cache.solution(initial);
+        if (cached != null) {
+            last = cached.get(cached.size() - 1);
+        } else if (mode == SearchMode.IDA_STAR) {
+            zeroPath = iterativeDeepeningSearch(initial);
+        } else if (mode == SearchMode.PARALLEL_A_STAR) {
+            ParallelSearch search = new ParallelSearch(heuristic, Runtime.getRuntime().availableProcessors(),
+                    listener != null, limits);
+            last = search.search(initial.copy());
+            search.addStats(stats);
+            outcome = search.getOutcome();
+        } else if (mode == SearchMode.BIDIRECTIONAL_A_STAR) {
+            BidirectionalSearch search = new BidirectionalSearch(heuristic, stats, listener, limits);
+            last = search.search(initial);
+            outcome = search.getOutcome();
+        } else if (mode == SearchMode.ANYTIME_A_STAR) {
+            AnytimeSearch search = new AnytimeSearch(heuristic, AnytimeSearch.INITIAL_WEIGHT, stats, listener, limits);
+            last = search.search(initial);
+            outcome = search.getOutcome();
+            suboptimality = search.getBound();
+        } else {
+            last = search(initial);
+        }
+        if (outcome != SearchOutcome.SOLVED && mode != SearchMode.ANYTIME_A_STAR)
+            suboptimality = Double.POSITIVE_INFINITY;
+        stats.finish();
+        if (listener != null)
+            listener.finished(stats);
+        if (zeroPath == null) {
+            remainingEstimate = heuristic.estimate(last);
+        } else {
+            MutableBoard board = new MutableBoard(initial);
+            for (int to : zeroPath)
+                board.move(to);
+            remainingEstimate = heuristic.estimate(board);
+        }
+        if (cache != null && cached == null && outcome == SearchOutcome.SOLVED)
+            cache.put(solution());
+    }
+
+    // the boards from the first one to last, following the previous boards
+    static List<Board> path(Board last) {
+        List<Board> boards = new ArrayList<Board>(last.getMoves() + 1);
+        for (Board current = last; current != null; current = current.getPreviousBoard())
+            boards.add(current);
+        Collections.reverse(boards);
+        return Collections.unmodifiableList(boards);
+    }
+
+    private static Heuristic heuristic(PriorityFunc priority) {
+        if (priority == PriorityFunc.HAMMING)
+            return new HammingHeuristic();
+        if (priority == PriorityFunc.MANHATTAN)
+            return new ManhattanHeuristic();
+        throw new IllegalArgumentException("Priority function not supported");
+    }
+
+    // A* search with a closed set: every board state is kept at most once (the node that reached it with the
+    // fewest moves), so states reachable through different paths are not expanded again.
+    // The heuristic is evaluated once for the initial board: successors derive it from their previous board.
+    private Board search(Board initial) {
+        BucketQueue queue = new BucketQueue();
+        Map<Board, Board> bestBoards = new HashMap<Board, Board>();     // board state -> node with the least moves
+        Board root = initial.copy();
+        root.setHeuristicState(evaluate(root));
+        int rootHeuristic = heuristic.value(root.getHeuristicState());
+        queue.add(root, rootHeuristic, rootHeuristic);
+        bestBoards.put(root, root);
+        while (true) {
+            int priority = queue.minPriority();
+            Board currentMinBoard = queue.poll();                        // board with min. priority
+            // a shorter path to this state was found after it was queued
+            if (bestBoards.get(currentMinBoard) != currentMinBoard) {
+                stats.pruned();
+                continue;
+            }
+            if (stats.bound(priority) && listener != null)
+                listener.boundRaised(priority, stats);
+            if (currentMinBoard.isGoal())
+                return currentMinBoard;
+            if (cache != null) {
+                // the exact distance is a perfect heuristic: queue the board again with it if its priority was lower,
+                // otherwise it has the lowest priority and the cached path is the shortest
+                int distance = cache.distance(currentMinBoard);
+                if (distance >= 0 && currentMinBoard.getMoves() + distance > priority) {
+                    queue.add(currentMinBoard, currentMinBoard.getMoves() + distance, distance);
+                    continue;
                 }
-                solution = queue.peek();
-                moves = queue.peek().getMoves();
+                Board goal = distance >= 0 ? cache.follow(currentMinBoard) : null;
+                if (goal != null)
+                    return goal;
             }
 
-        } else if (priority == PriorityFunc.MANHATTAN) {
-            PriorityQueue<Board> queue = new PriorityQueue<Board>(new ManhattanComparator());
-            queue.add(initial);
-            while (queue.peek().manhattan() != 0) {
-                Board currentMinBoard = queue.poll();            // board with min. priority
-                Collection<Board> neighbors = currentMinBoard.neighbors();
-                for (Board board : neighbors) {
-                    if (currentMinBoard.getPreviousBoard() == null || !(currentMinBoard.getPreviousBoard().equals(board))) {
-                        Board neighbor = new Board(board.getTiles(), currentMinBoard);
-                        queue.add(neighbor);
-                    }
+            if (stats.expanded() && listener != null)
+                listener.progress(stats);
+            if (limits != null) {
+                int h = heuristic.value(currentMinBoard.getHeuristicState());
+                if (h < bestPriority) {
+                    bestPriority = h;
+                    bestBoard = currentMinBoard;
+                }
+                SearchOutcome limit = limits.check(stats.getNodesExpanded(), stats);
+                if (limit != null) {
+                    outcome = limit;
+                    return bestBoard;
                 }
-                solution = queue.peek();
-                moves = queue.peek().getMoves();
             }
-        } else {
-            throw new IllegalArgumentException("Priority function not supported");
+            int zero = currentMinBoard.getZeroIndex();
+            int state = currentMinBoard.getHeuristicState();
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                // the tile next to the empty spot moves into it
+                int from = currentMinBoard.successorIndex(direction);
+                if (from < 0)
+                    continue;
+                Board neighbor = currentMinBoard.successor(from);
+                stats.generated(1);
+                Board known = bestBoards.get(neighbor);
+                // only keep a path to an already seen state if it improves its number of moves
+                if (known != null && known.getMoves() <= currentMinBoard.getMoves() + 1) {
+                    stats.pruned();
+                    continue;
+                }
+                neighbor.setHeuristicState(update(neighbor, state, neighbor.getTile(zero), from, zero));
+                bestBoards.put(neighbor, neighbor);
+                int neighborHeuristic = heuristic.value(neighbor.getHeuristicState());
+                queue.add(neighbor, neighbor.getMoves() + neighborHeuristic, neighborHeuristic);
+            }
+            stats.openListSize(queue.size());
+            stats.retainedBoards(bestBoards.size());
         }
+    }
 
-        Board current = solution;
-        while (current.getPreviousBoard() != null) {
-            solutionBoards.add(0, current);
-            current = current.getPreviousBoard();
-        }
-        solutionBoards.add(0, current);
+    // heuristic.evaluate(), timed when there is a listener
+    private int evaluate(BoardView board) {
+        if (listener == null)
+            return heuristic.evaluate(board);
+        long start = System.nanoTime();
+        int state = heuristic.evaluate(board);
+        stats.heuristicTime(System.nanoTime() - start);
+        return state;
     }
 
-    // Comparator classes for the priority functions: descending order in priority queue!
-    static class HammingComparator implements Comparator<Board> {
-        public int compare(Board board1, Board board2) {
-            if (board1.getHammingPriority() + board1.getMoves() > board2.getHammingPriority() + board2.getMoves()) {
-                return 1;
-            }
-            if (board1.getHammingPriority() + board1.getMoves() < board2.getHammingPriority() + board2.getMoves()) {
-                return -1;
-            }
-            return 0;
+    // heuristic.update(), timed when there is a listener
+    private int update(BoardView board, int state, int tile, int from, int to) {
+        if (listener == null)
+            return heuristic.update(board, state, tile, from, to);
+        long start = System.nanoTime();
+        int next = heuristic.update(board, state, tile, from, to);
+        stats.heuristicTime(System.nanoTime() - start);
+        return next;
+    }
+
+    // IDA*: depth-first searches bounded by moves + priority, raising the bound to the smallest value that exceeded it
+    // until the goal is found. Only the board being searched and the moves leading to it are kept in memory.
+    // Returns the index the empty tile moves to in every move of the solution.
+    private int[] iterativeDeepeningSearch(Board initial) {
+        MutableBoard board = new MutableBoard(initial);
+        int state = evaluate(board);
+        int bound = heuristic.value(state);
+        int[] path = new int[bound + 1];
+        int result;
+        if (stats.bound(bound) && listener != null)
+            listener.boundRaised(bound, stats);
+        while ((result = boundedSearch(board, state, 0, bound, -1, path)) >= 0) {
+            bound = result;
+            path = new int[bound + 1];
+            if (stats.bound(bound) && listener != null)
+                listener.boundRaised(bound, stats);
         }
+
+        return result == STOPPED ? bestPath : Arrays.copyOf(path, foundMoves);
     }
 
-    static class ManhattanComparator implements Comparator<Board> {
-        public int compare(Board board1, Board board2) {
-            if (board1.getManhattanPriority() + board1.getMoves() > board2.getManhattanPriority() + board2.getMoves()) {
-                return 1;
+    // depth-first search below board (with the given heuristic state), which was reached in "moves" moves from the
+    // position where the empty tile was at previousZero. Returns FOUND when the goal is reached (path then holds the
+    // moves), STOPPED when a limit is reached, otherwise the smallest moves + priority that exceeded the bound.
+    private int boundedSearch(MutableBoard board, int state, int moves, int bound, int previousZero, int[] path) {
+        int priority = heuristic.value(state);
+        if (moves + priority > bound)
+            return moves + priority;
+        if (priority == 0 && board.isGoal()) {
+            foundMoves = moves;
+            return FOUND;
+        }
+
+        if (stats.expanded() && listener != null)
+            listener.progress(stats);
+        stats.retainedBoards(moves + 1);
+        if (limits != null) {
+            if (priority < bestPriority) {
+                bestPriority = priority;
+                bestPath = Arrays.copyOf(path, moves);
             }
-            if (board1.getManhattanPriority() + board1.getMoves() < board2.getManhattanPriority() + board2.getMoves()) {
-                return -1;
+            SearchOutcome limit = limits.check(stats.getNodesExpanded(), stats);
+            if (limit != null) {
+                outcome = limit;
+                return STOPPED;
             }
-            return 0;
         }
+        int N = board.getSize();
+        int zero = board.getZeroIndex();
+        int min = Integer.MAX_VALUE;
+        for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+            int to = Board.moveIndex(N, zero, direction);
+            if (to < 0 || to == previousZero)
+                continue;
+            int tile = board.getTile(to);
+            board.move(to);
+            path[moves] = to;
+            stats.generated(1);
+            int result = boundedSearch(board, update(board, state, tile, to, zero), moves + 1, bound, zero, path);
+            if (result == FOUND || result == STOPPED)
+                return result;
+            board.move(zero);
+            min = Math.min(min, result);
+        }
+        return min;
     }
 
     /**
      * Returns a List of board positions as the solution. It should contain the initial
      * Board as well as the solution (if these are equal only one Board is returned).
+     * If the search stopped at one of its limits, the list ends in the board closest to the goal it expanded.
      */
     public List<Board> solution() {
+        if (solutionBoards == null) {
+            if (zeroPath == null) {
+                solutionBoards = path(last);
+            } else {
+                // replay the moves of IDA* on the initial board
+                List<Board> boards = new ArrayList<Board>(zeroPath.length + 1);
+                Board board = initial.copy();
+                boards.add(board);
+                for (int to : zeroPath)
+                    boards.add(board = board.successor(to));
+                solutionBoards = Collections.unmodifiableList(boards);
+            }
+        }
         return solutionBoards;
     }
-}
 
+    /**
+     * Returns the number of moves of solution(), without building it.
+     */
+    public int moveCount() {
+        if (zeroPath != null)
+            return zeroPath.length;
+        int count = 0;
+        for (Board board = last; board.getPreviousBoard() != null; board = board.getPreviousBoard())
+            count++;
+        return count;
+    }
+
+    /**
+     * Returns the moves of the empty tile from the initial board to the last board of solution(), one letter per
+     * move: U, D, L or R for up, down, left or right. Board.play() makes these moves. The boards of solution() are
+     * not built for this.
+     */
+    public String moves() {
+        int N = initial.getSize();
+        char[] moves = new char[moveCount()];
+        if (zeroPath != null) {
+            int from = initial.getZeroIndex();
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = Board.moveLetter(N, from, zeroPath[i]);
+                from = zeroPath[i];
+            }
+        } else {
+            Board board = last;
+            for (int i = moves.length - 1; i >= 0; i--) {
+                Board previous = board.getPreviousBoard();
+                moves[i] = Board.moveLetter(N, previous.getZeroIndex(), board.getZeroIndex());
+                board = previous;
+            }
+        }
+        return new String(moves);
+    }
+
+    /**
+     * Returns SOLVED if the search ran to its end, otherwise the limit that stopped it. With SearchMode.ANYTIME_A_STAR,
+     * or when bidirectional or parallel A* already found a solution, solution() may lead to the goal even though a
+     * limit was reached; getSuboptimalityBound() then tells how good that solution is known to be.
+     */
+    public SearchOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns a bound on the length of solution() divided by the length of a shortest solution: 1 once a shortest
+     * solution was found, infinite if it is not known. Only SearchMode.ANYTIME_A_STAR has bounds in between.
+     */
+    public double getSuboptimalityBound() {
+        return suboptimality;
+    }
+
+    /**
+     * Returns the priority of the last board of solution(): 0 once solved, otherwise an estimate of the number of
+     * moves still needed.
+     */
+    public int getRemainingEstimate() {
+        return remainingEstimate;
+    }
+
+    /**
+     * Returns the number of generated boards that were discarded because their state was already reached
+     * with at most the same number of moves.
+     */
+    public int getDuplicatesPruned() {
+        return (int) stats.getDuplicatesPruned();
+    }
 
+    /**
+     * Returns the number of boards whose successors were generated during the search. IDA* counts a board again in
+     * every iteration that reaches it.
+     */
+    public long getNodesExpanded() {
+        return stats.getNodesExpanded();
+    }
+
+    /**
+     * Returns the statistics of the search.
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+}
@@ -3,8 +3,22 @@ package gna;
 import libpract.PriorityFunc;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
 
 /**
  * A number of JUnit tests for Solver.
@@ -52,6 +66,20 @@ public class UnitTests {
         assert neighbors.contains(neighborFour);
         assert neighbors.size() == 4;
 
+        // packed representation for larger boards (one and two bytes per tile)
+        for (int size : new int[]{5, 17}) {
+            int[][] largePuzzle = new int[size][size];
+            for (int i = 0; i < size * size; i++)
+                largePuzzle[i / size][i % size] = (i + 1) % (size * size);
+            Board largeBoard = new Board(largePuzzle);
+            assert Arrays.deepEquals(largeBoard.getTiles(), largePuzzle);
+            assert largeBoard.getValue(size - 1, size - 2) == size * size - 1;
+            assert largeBoard.hamming() == 0 && largeBoard.manhattan() == 0;
+            assert largeBoard.neighbors().size() == 2;
+            assert largeBoard.equals(new Board(largePuzzle));
+            assert largeBoard.hashCode() == new Board(largePuzzle).hashCode();
+        }
+
         // Hamming + getMoves()
         int[][] testPuzzle28 = {{7, 8, 5},
                 {4, 0, 2},
@@ -90,6 +118,19 @@ public class UnitTests {
         assert testBoardOneMove.getManhattanPriority() + testBoardOneMove.getMoves() == 12;
 
 
+        // priorities of successors are derived incrementally from their previous board
+        for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+            int to = testBoard28OneMove.successorIndex(direction);
+            if (to < 0)
+                continue;
+            Board successor = testBoard28OneMove.successor(to);
+            assert successor.getPreviousBoard() == testBoard28OneMove;
+            assert successor.getMoves() == testBoard28OneMove.getMoves() + 1;
+            assert successor.getHammingPriority() == successor.hamming();
+            assert successor.getManhattanPriority() == successor.manhattan();
+            assert !successor.equals(testBoard28);     // the previous board is not generated again
+        }
+
         // isSolvable()
         int[][] testPuzzle20 = {{1, 2, 3, 4, 5, 7, 14},
                 {8, 9, 10, 11, 12, 13, 6},
@@ -111,6 +152,26 @@ public class UnitTests {
                 {7, 8, 0}};
         Board impossibleBoard = new Board(impossiblePuzzle);
         assert !(impossibleBoard.isSolvable());
+        assert Arrays.deepEquals(impossibleBoard.getTiles(), impossiblePuzzle);   // the board is not changed
+
+        // isSolvable() on large boards: the goal board, and the goal board with two tiles swapped
+        int[][] largePuzzle = new int[100][100];
+        for (int i = 0; i < 100 * 100; i++)
+            largePuzzle[i / 100][i % 100] = (i + 1) % (100 * 100);
+        assert new Board(largePuzzle).isSolvable();
+        largePuzzle[0][0] = 2;
+        largePuzzle[0][1] = 1;
+        assert !new Board(largePuzzle).isSolvable();
+        largePuzzle[99][99] = largePuzzle[98][99];
+        largePuzzle[98][99] = 0;
+        assert !new Board(largePuzzle).isSolvable();
+
+        // tiles that are not a permutation of 0 .. N * N - 1 are rejected instead of packed into another board
+        assert rejected(new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}, {9, 10, 11, 12}, {13, 14, 16, 0}});
+        assert rejected(new int[][]{{1, 2, 3}, {4, 5, 6}, {7, 8, -1}});
+        assert rejected(new int[][]{{1, 1, 3}, {4, 5, 6}, {7, 8, 0}});
+        assert rejected(new int[][]{{1, 2, 3}, {4, 5}, {7, 8, 0}});
+        assert rejected(new int[0][0]);
 
 
         // Solver (for both given 3x3 and 4x4 boards)
@@ -138,6 +199,565 @@ public class UnitTests {
         Solver solver32 = new Solver(testBoard32, PriorityFunc.MANHATTAN);
         assert solver32.solution().size() == 33; // correct amount of moves
         assert solver32.solution().get(32).equals(new Board(solution4x4)); // correct solution
+        assert solver32.getDuplicatesPruned() > 0; // states reached through several paths are expanded only once
+        assert solver32.getNodesExpanded() >= 32; // at least every board on the solution but the goal
+
+        // IDA* finds solutions of the same length
+        Solver idaSolver28 = new Solver(testBoard28, PriorityFunc.MANHATTAN, SearchMode.IDA_STAR);
+        assert idaSolver28.solution().size() == 29;
+        assert idaSolver28.solution().get(0).equals(testBoard28);
+        assert idaSolver28.solution().get(28).equals(new Board(solution3x3));
+        Solver idaSolver32 = new Solver(testBoard32, PriorityFunc.HAMMING, SearchMode.IDA_STAR);
+        assert idaSolver32.solution().size() == 33;
+        assert idaSolver32.solution().get(32).equals(new Board(solution4x4));
+
+        // bidirectional search joins its two halves into one solution of the same length
+        Solver bidirectionalSolver32 = new Solver(testBoard32, PriorityFunc.MANHATTAN, SearchMode.BIDIRECTIONAL_A_STAR);
+        List<Board> bidirectionalSolution = bidirectionalSolver32.solution();
+        assert bidirectionalSolution.size() == 33;
+        assert bidirectionalSolution.get(0).equals(testBoard32);
+        assert bidirectionalSolution.get(32).equals(new Board(solution4x4));
+        for (int i = 1; i < bidirectionalSolution.size(); i++)
+            assert bidirectionalSolution.get(i - 1).neighbors().contains(bidirectionalSolution.get(i));
+        assert new ManhattanHeuristic(testBoard32).evaluate(testBoard32) == 0;
+        assert new Solver(new Board(solution3x3), PriorityFunc.HAMMING, SearchMode.BIDIRECTIONAL_A_STAR)
+                .solution().size() == 1;
+        // the backward search uses the same kind of heuristic, towards the initial board
+        assert new HammingHeuristic().towards(testBoard32).evaluate(testBoard32) == 0;
+        assert new LinearConflictHeuristic().towards(testBoard32).evaluate(testBoard32) == 0;
+        assert new LinearConflictHeuristic(testBoard32).evaluate(new Board(solution4x4))
+                == new LinearConflictHeuristic().evaluate(testBoard32);
+        assert new Solver(testBoard32, new LinearConflictHeuristic(), SearchMode.BIDIRECTIONAL_A_STAR)
+                .solution().size() == 33;
+        try {
+            new Solver(testBoard28, new WalkingDistanceHeuristic(3), SearchMode.BIDIRECTIONAL_A_STAR);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().contains("WalkingDistanceHeuristic");
+        }
+
+    }
+
+    private static boolean rejected(int[][] tiles) {
+        try {
+            new Board(tiles);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    @Test
+    public void patternDatabase() throws IOException {
+        int[][] testPuzzle28 = {{7, 8, 5},
+                {4, 0, 2},
+                {3, 6, 1}};
+        Board testBoard28 = new Board(testPuzzle28);
+        int[][] solution3x3 = {{1, 2, 3},
+                {4, 5, 6},
+                {7, 8, 0}};
+
+        PatternDatabase database = PatternDatabase.build(3, PatternDatabase.defaultGroups(3));
+        assert database.estimate(new Board(solution3x3)) == 0;
+        // additive and admissible: at least Manhattan, at most the 28 moves of the solution
+        assert database.estimate(testBoard28) >= testBoard28.manhattan();
+        assert database.estimate(testBoard28) <= 28;
+
+        // the memory-mapped copy gives the same estimates
+        File file = File.createTempFile("puzzle3x3", ".pdb");
+        file.deleteOnExit();
+        database.save(file.toPath());
+        PatternDatabase loaded = PatternDatabase.load(file.toPath());
+        assert loaded.estimate(testBoard28) == database.estimate(testBoard28);
+
+        Solver solver = new Solver(testBoard28, loaded, SearchMode.A_STAR);
+        assert solver.solution().size() == 29;
+        assert solver.solution().get(28).equals(new Board(solution3x3));
+        Solver idaSolver = new Solver(testBoard28, loaded, SearchMode.IDA_STAR);
+        assert idaSolver.solution().size() == 29;
+    }
+
+    @Test
+    public void heuristics() {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        Heuristic[] heuristics = {new HammingHeuristic(), new ManhattanHeuristic(), new LinearConflictHeuristic(),
+                new WalkingDistanceHeuristic(4), PatternDatabase.build(4, new int[][]{{1, 2, 3, 4}, {5, 6, 9, 10}}),
+                PatternDatabase.build(4, new int[][]{{3, 4}, {9, 13}, {2, 5}})};    // the last two: mirrored, shared
+
+        // admissible, and the stronger heuristics dominate Manhattan
+        int manhattan = testBoard32.manhattan();
+        for (Heuristic heuristic : heuristics) {
+            assert heuristic.estimate(testBoard32) <= 32;
+            assert heuristic.estimate(new Board(new int[][]{{1, 2, 3, 4}, {5, 6, 7, 8}, {9, 10, 11, 12}, {13, 14, 15, 0}})) == 0;
+        }
+        assert heuristics[2].estimate(testBoard32) >= manhattan;
+        assert heuristics[3].estimate(testBoard32) >= manhattan;
+
+        // incremental updates along a random walk agree with evaluating from scratch
+        Random random = new Random(42);
+        int[] states = new int[heuristics.length];
+        for (int h = 0; h < heuristics.length; h++)
+            states[h] = heuristics[h].evaluate(testBoard32);
+        Board board = testBoard32;
+        for (int step = 0; step < 500; step++) {
+            int to;
+            do {
+                to = board.successorIndex(random.nextInt(Board.DIRECTIONS));
+            } while (to < 0);
+            Board next = board.successor(to);
+            int tile = next.getTile(board.getZeroIndex());
+            for (int h = 0; h < heuristics.length; h++) {
+                states[h] = heuristics[h].update(next, states[h], tile, next.getZeroIndex(), board.getZeroIndex());
+                assert heuristics[h].value(states[h]) == heuristics[h].estimate(next);
+            }
+            board = next;
+        }
+
+        // stronger heuristics still find the shortest solution; walking distance only works towards the goal
+        for (SearchMode mode : SearchMode.values()) {
+            assert new Solver(testBoard32, heuristics[2], mode).solution().size() == 33;
+            if (mode != SearchMode.BIDIRECTIONAL_A_STAR)
+                assert new Solver(testBoard32, heuristics[3], mode).solution().size() == 33;
+        }
+    }
+
+    @Test
+    public void bucketQueue() {
+        Board board = new Board(new int[][]{{1, 2}, {3, 0}});
+        Board[] boards = new Board[5];
+        for (int i = 0; i < boards.length; i++)
+            boards[i] = board.copy();
+        BucketQueue queue = new BucketQueue();
+        queue.add(boards[0], 10, 4);
+        queue.add(boards[1], 8, 3);
+        queue.add(boards[2], 10, 2);
+        queue.add(boards[3], 200, 0);
+        queue.add(boards[4], 10, 2);
+        assert queue.size() == 5;
+        assert queue.minPriority() == 8;
+        assert queue.poll() == boards[1];
+        assert queue.peek() == boards[4];      // lowest h first, then last in first out
+        assert queue.poll() == boards[4];
+        assert queue.poll() == boards[2];
+        assert queue.poll() == boards[0];
+        assert queue.poll() == boards[3];
+        assert queue.isEmpty() && queue.poll() == null;
+    }
+
+    @Test
+    public void concurrentSolvers() throws InterruptedException, ExecutionException {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        Heuristic walking = new WalkingDistanceHeuristic(4);
+        Heuristic linear = new LinearConflictHeuristic();    // bidirectional A* needs one towards the initial board
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<List<Board>>> solutions = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            SearchMode mode = SearchMode.values()[i % SearchMode.values().length];
+            Heuristic heuristic = mode == SearchMode.BIDIRECTIONAL_A_STAR ? linear : walking;
+            solutions.add(pool.submit(() -> new Solver(testBoard32, heuristic, mode).solution()));
+        }
+        for (Future<List<Board>> solution : solutions) {
+            assert solution.get().size() == 33;
+            assert solution.get().get(0).equals(testBoard32);
+        }
+        pool.shutdown();
+        assert testBoard32.getMoves() == 0 && testBoard32.getPreviousBoard() == null;
+
+        // hash distributed A* with several workers, also when they have to share one processor
+        for (int threads = 1; threads <= 5; threads += 2) {
+            Board goal = new ParallelSearch(walking, threads, false, null).search(testBoard32.copy());
+            assert goal.isGoal() && goal.getMoves() == 32;
+        }
+
+        try {
+            solutions.get(0).get().clear();
+            assert false;   // solution() is read-only
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void searchStats() {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        for (SearchMode mode : SearchMode.values()) {
+            List<Integer> raised = new ArrayList<>();
+            SearchStats[] finished = new SearchStats[1];
+            SearchListener listener = new SearchListener() {
+                public void boundRaised(int bound, SearchStats stats) {
+                    raised.add(bound);
+                }
+
+                public void finished(SearchStats stats) {
+                    finished[0] = stats.snapshot();
+                }
+            };
+            Solver solver = new Solver(testBoard32, new ManhattanHeuristic(), mode, listener);
+            SearchStats stats = solver.getStats();
+            assert finished[0] != null && finished[0].getNodesExpanded() == stats.getNodesExpanded();
+            assert stats.getNodesExpanded() >= 32 && stats.getNodesGenerated() >= stats.getNodesExpanded();
+            assert stats.getPeakRetainedBoards() > 0 && stats.getHeuristicNanos() > 0;
+            // bounds go up to the length of the solution
+            List<Integer> bounds = stats.getBounds();
+            assert !bounds.isEmpty() && bounds.get(bounds.size() - 1) <= 32;
+            for (int i = 1; i < bounds.size(); i++)
+                assert bounds.get(i - 1) < bounds.get(i);
+            if (mode != SearchMode.PARALLEL_A_STAR)
+                assert raised.equals(bounds);
+        }
+
+        // anytime search: better solutions with tighter bounds, up to a shortest one
+        List<List<Board>> improvements = new ArrayList<>();
+        List<Double> suboptimality = new ArrayList<>();
+        Solver anytime = new Solver(testBoard32, new ManhattanHeuristic(), SearchMode.ANYTIME_A_STAR, new SearchListener() {
+            public void solutionImproved(List<Board> solution, double bound, SearchStats stats) {
+                improvements.add(solution);
+                suboptimality.add(bound);
+            }
+        });
+        assert !improvements.isEmpty() && anytime.getSuboptimalityBound() == 1;
+        assert anytime.solution().equals(improvements.get(improvements.size() - 1));
+        for (int i = 0; i < improvements.size(); i++) {
+            List<Board> solution = improvements.get(i);
+            assert solution.get(0).equals(testBoard32) && solution.get(solution.size() - 1).isGoal();
+            assert solution.size() - 1 <= suboptimality.get(i) * 32;
+            if (i > 0)
+                assert solution.size() <= improvements.get(i - 1).size() && suboptimality.get(i) <= suboptimality.get(i - 1);
+        }
+        assert anytime.solution().size() == 33;
+
+        // without a listener the heuristic is not timed
+        SearchStats stats = new Solver(testBoard32, new ManhattanHeuristic(), SearchMode.A_STAR).getStats();
+        assert stats.getHeuristicNanos() == 0 && stats.getPeakOpenListSize() > 0;
+        assert stats.getBounds().get(stats.getBounds().size() - 1) == 32;
+        assert stats.getDuplicatesPruned() > 0 && stats.getExpansionsPerSecond() > 0;
+    }
+
+    @Test
+    public void searchLimits() throws InterruptedException, ExecutionException {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        Heuristic hamming = new HammingHeuristic();    // millions of expansions for this board
+        for (SearchMode mode : SearchMode.values()) {
+            Solver solver = new Solver(testBoard32, hamming, mode, null, new SearchLimits().setMaxNodesExpanded(2000));
+            assert solver.getOutcome() == SearchOutcome.NODE_LIMIT;
+            assert solver.getNodesExpanded() <= 2000 + SearchLimits.CHECK_INTERVAL;
+            // partial result: a path from the initial board to a board closer to the goal
+            List<Board> path = solver.solution();
+            assert path.get(0).equals(testBoard32);
+            for (int i = 1; i < path.size(); i++)
+                assert path.get(i - 1).neighbors().contains(path.get(i));
+            assert solver.getRemainingEstimate() == hamming.estimate(path.get(path.size() - 1));
+            assert solver.getRemainingEstimate() > 0 && solver.getRemainingEstimate() < testBoard32.hamming();
+
+            SearchLimits cancelled = new SearchLimits();
+            cancelled.cancel();
+            assert new Solver(testBoard32, hamming, mode, null, cancelled).getOutcome() == SearchOutcome.CANCELLED;
+            assert new Solver(testBoard32, hamming, mode, null, new SearchLimits().setTimeLimit(0, TimeUnit.SECONDS))
+                    .getOutcome() == SearchOutcome.TIME_LIMIT;
+            assert new Solver(testBoard32, hamming, mode, null, new SearchLimits().setMemoryCeiling(0))
+                    .getOutcome() == SearchOutcome.MEMORY_LIMIT;
+        }
+
+        // limits that are not reached do not change the solution
+        Solver solved = new Solver(testBoard32, new ManhattanHeuristic(), SearchMode.A_STAR, null,
+                new SearchLimits().setTimeLimit(1, TimeUnit.HOURS).setMaxNodesExpanded(1_000_000));
+        assert solved.getOutcome() == SearchOutcome.SOLVED && solved.solution().size() == 33;
+        assert solved.getRemainingEstimate() == 0;
+
+        // cancellation from another thread
+        SearchLimits limits = new SearchLimits();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Solver> solver = pool.submit(() -> new Solver(testBoard32, hamming, SearchMode.IDA_STAR, null, limits));
+        Thread.sleep(50);
+        limits.cancel();
+        assert solver.get().getOutcome() == SearchOutcome.CANCELLED;
+        pool.shutdown();
+
+        // interrupting the solving thread cancels the search in every mode
+        for (SearchMode mode : SearchMode.values()) {
+            Solver[] interrupted = new Solver[1];
+            Thread thread = new Thread(() -> interrupted[0] = new Solver(testBoard32, hamming, mode, null,
+                    new SearchLimits()));
+            thread.start();
+            Thread.sleep(50);
+            thread.interrupt();
+            thread.join();
+            assert interrupted[0].getOutcome() == SearchOutcome.CANCELLED;
+            assert interrupted[0].solution().get(0).equals(testBoard32);
+        }
+    }
+
+    @Test
+    public void solutionCache() throws IOException {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        Heuristic manhattan = new ManhattanHeuristic();
+        SolutionCache cache = new SolutionCache(1000);
+        Solver first = new Solver(testBoard32, manhattan, SearchMode.A_STAR, new SearchOptions().setCache(cache));
+        assert cache.getMisses() == 1 && cache.size() == 33;
+
+        // a cached board state is solved without searching
+        Solver second = new Solver(testBoard32, manhattan, SearchMode.IDA_STAR, new SearchOptions().setCache(cache));
+        assert cache.getHits() == 1 && second.getNodesExpanded() == 0;
+        assert second.solution().equals(first.solution());
+        Board halfway = first.solution().get(16);
+        assert cache.distance(halfway) == 16 && cache.solution(halfway).size() == 17;
+
+        // A* completes its solution from the cache once it reaches a cached state
+        Board detour = null;
+        for (Board neighbor : testBoard32.neighbors()) {
+            if (cache.distance(neighbor) < 0)
+                detour = neighbor;
+        }
+        int length = new Solver(detour, PriorityFunc.MANHATTAN).solution().size();
+        Solver stitched = new Solver(detour, manhattan, SearchMode.A_STAR, new SearchOptions().setCache(cache));
+        assert stitched.solution().size() == length && stitched.solution().get(length - 1).isGoal();
+        assert stitched.getNodesExpanded() < new Solver(detour, PriorityFunc.MANHATTAN).getNodesExpanded();
+
+        // persistence keeps the states and the order of use
+        File file = File.createTempFile("cache", ".bin");
+        try {
+            cache.save(file.toPath());
+            SolutionCache loaded = SolutionCache.load(file.toPath(), 1000);
+            assert loaded.size() == cache.size();
+            assert loaded.solution(testBoard32).equals(first.solution());
+            // only the most recently used states fit
+            SolutionCache small = SolutionCache.load(file.toPath(), 10);
+            assert small.size() == 10 && small.solution(testBoard32) == null && small.getMisses() == 1;
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void symmetry() throws IOException {
+        int[][] testPuzzle28 = {{7, 8, 5},
+                {4, 0, 2},
+                {3, 6, 1}};
+        Board testBoard28 = new Board(testPuzzle28);
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+
+        // transposing relabels the tiles so that the goal maps onto itself
+        Board transposed28 = testBoard28.transposed();
+        assert transposed28.equals(new Board(new int[][]{{3, 2, 7}, {6, 0, 8}, {5, 4, 1}}));
+        assert transposed28.transposed().equals(testBoard28) && testBoard32.transposed().transposed().equals(testBoard32);
+        assert Board.goal(4).transposed().equals(Board.goal(4)) && Board.goal(4).isCanonical();
+        Board large = new Board(new int[][]{{1, 2, 3, 4, 5}, {6, 7, 8, 9, 10}, {11, 12, 13, 14, 15}, {16, 17, 18, 19, 20},
+                {21, 22, 23, 0, 24}});
+        assert large.transposed().transposed().equals(large) && large.transposed().manhattan() == large.manhattan();
+
+        // a board and its transposed board have one canonical form and the same distance to the goal
+        assert testBoard32.canonical().equals(testBoard32.transposed().canonical());
+        assert testBoard32.isCanonical() != testBoard32.transposed().isCanonical();
+        assert transposed28.manhattan() == testBoard28.manhattan();
+        assert new Solver(transposed28, PriorityFunc.MANHATTAN).solution().size() == 29;
+
+        // the cache serves the transposed board with the moves transposed
+        SolutionCache cache = new SolutionCache(1000);
+        new Solver(testBoard32, new ManhattanHeuristic(), SearchMode.A_STAR, new SearchOptions().setCache(cache));
+        List<Board> solution = cache.solution(testBoard32.transposed());
+        assert solution != null && solution.size() == 33 && solution.get(32).isGoal();
+        for (int i = 1; i < solution.size(); i++) {
+            Collection<Board> neighbors = solution.get(i - 1).neighbors();
+            assert neighbors.contains(solution.get(i));
+        }
+
+        // the reflected lookup of an asymmetric partition is admissible and at least the direct one
+        PatternDatabase database = PatternDatabase.build(3, PatternDatabase.defaultGroups(3));
+        assert database.estimate(testBoard28) <= 28 && database.estimate(transposed28) == database.estimate(testBoard28);
+        Solver solver = new Solver(testBoard28, database, SearchMode.IDA_STAR);
+        assert solver.solution().size() == 29;
+
+        // a symmetric partition stores the table of a group and its mirror group once
+        PatternDatabase symmetric = PatternDatabase.build(3, new int[][]{{2, 3, 6}, {4, 7, 8}, {1, 5}});
+        assert symmetric.estimate(testBoard28) >= testBoard28.manhattan() && symmetric.estimate(testBoard28) <= 28;
+        File file = File.createTempFile("symmetric3x3", ".pdb");
+        file.deleteOnExit();
+        symmetric.save(file.toPath());
+        assert file.length() < 2 * 9 * 8 * 7 + 9 * 8;
+        PatternDatabase loaded = PatternDatabase.load(file.toPath());
+        assert loaded.estimate(testBoard28) == symmetric.estimate(testBoard28);
+        assert loaded.estimate(transposed28) == symmetric.estimate(testBoard28);
+        assert new Solver(testBoard28, loaded, SearchMode.A_STAR).solution().size() == 29;
+    }
+
+    @Test
+    public void externalSearch() throws IOException {
+        File directory = File.createTempFile("bfs", "");
+        directory.delete();
+        try {
+            // a buffer of 1000 states makes every depth past the first few a merge of several runs
+            ExternalSearch search = new ExternalSearch(3, directory.toPath(), 1000);
+            search.run(10, null);
+            List<Long> counts = search.getCounts();
+            long total = 0;
+            for (long count : counts)
+                total += count;
+            assert total == 181440 && counts.size() == 32;
+            assert counts.get(1) == 2 && counts.get(30) == 221 && counts.get(31) == 2;
+
+            // the two 3x3 boards that take 31 moves, a transposed pair
+            List<Board> antipodes = search.getAntipodes();
+            assert antipodes.size() == 2 && antipodes.get(0).transposed().equals(antipodes.get(1));
+            assert new Solver(antipodes.get(0), PriorityFunc.MANHATTAN).solution().size() == 32;
+            assert directory.list().length == 0;
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void boardIO() throws IOException {
+        int[][] testPuzzle32 = {{3, 1, 6, 4},
+                {5, 0, 9, 7},
+                {10, 2, 11, 8},
+                {13, 15, 14, 12}};
+        Board testBoard32 = new Board(testPuzzle32);
+        assert testBoard32.toString().equals("\n 3 1 6 4\n 5 0 9 7\n 10 2 11 8\n 13 15 14 12\n");
+
+        // several boards in one stream, with comments
+        String text = "# two boards\n4\n 3  1  6  4\n 5  0  9  7 # row 2\n10  2 11  8\n13 15 14 12\n"
+                + "3 0 1 3 4 2 5 7 8 6\n# the end";
+        BoardReader reader = new BoardReader(new ByteArrayInputStream(text.getBytes()));
+        assert reader.next().equals(testBoard32);
+        Board testBoard04 = reader.next();
+        assert testBoard04.equals(new Board(new int[][]{{0, 1, 3}, {4, 2, 5}, {7, 8, 6}}));
+        assert reader.next() == null && reader.getCount() == 2;
+        try {
+            new BoardReader(new ByteArrayInputStream("3 1 2 3 4".getBytes())).next();
+            assert false;
+        } catch (IOException e) {
+            assert e.getMessage().contains("incomplete");
+        }
+        // invalid boards are reported by number, also when N * N would not fit in an int
+        for (String invalid : new String[]{"2 1 2 3 0\n4 1 2 3 4 5 6 7 8 9 10 11 12 13 14 16 0", "2 1 2 3 0 50000"}) {
+            BoardReader invalidReader = new BoardReader(new ByteArrayInputStream(invalid.getBytes()));
+            invalidReader.next();
+            try {
+                invalidReader.next();
+                assert false;
+            } catch (IOException e) {
+                assert e.getMessage().startsWith("Board 2");
+            }
+        }
+
+        // a solution as the moves of the empty tile, made again by play()
+        Solver solver = new Solver(testBoard32, PriorityFunc.MANHATTAN);
+        String moves = solver.moves();
+        assert moves.length() == 32 && moves.matches("[UDLR]+");
+        assert testBoard32.play(moves).isGoal() && testBoard32.play(moves).getMoves() == 32;
+        assert new Solver(testBoard04, PriorityFunc.MANHATTAN).moves().equals("RDRD");
+        // every mode gives its moves without building the boards first, and the same boards when asked for
+        for (SearchMode mode : SearchMode.values()) {
+            Solver modeSolver = new Solver(testBoard32, new ManhattanHeuristic(), mode);
+            String modeMoves = modeSolver.moves();
+            assert modeSolver.moveCount() == 32 && modeMoves.length() == 32;
+            assert modeSolver.solution().equals(Solver.path(testBoard32.play(modeMoves)));
+        }
+
+        // binary round trip of packed, byte and two-byte boards
+        int[][] large = new int[17][17];
+        for (int k = 0; k < 17 * 17; k++)
+            large[k / 17][k % 17] = (k + 1) % (17 * 17);
+        Board largeBoard = new Board(large);
+        Board mediumBoard = new Board(new int[][]{{1, 2, 3, 4, 5}, {6, 7, 8, 9, 10}, {11, 12, 13, 14, 15},
+                {16, 17, 18, 19, 20}, {21, 22, 23, 0, 24}});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryBoardWriter writer = new BinaryBoardWriter(Channels.newChannel(bytes))) {
+            writer.write(testBoard32, moves);
+            writer.write(mediumBoard);
+            writer.write(largeBoard, "");
+        }
+        // header, then size + packed tiles + length + 8 bytes of moves for the first board
+        assert bytes.size() == 4 + (2 + 8 + 4 + 8) + (2 + 25 + 4) + (2 + 2 * 17 * 17 + 4);
+        try (BinaryBoardReader binary = new BinaryBoardReader(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())))) {
+            assert binary.next().equals(testBoard32) && binary.getMoves().equals(moves);
+            assert binary.next().equals(mediumBoard) && binary.getMoves() == null;
+            Board read = binary.next();
+            assert read.equals(largeBoard) && read.getZeroIndex() == 17 * 17 - 1 && binary.getMoves().isEmpty();
+            assert binary.next() == null;
+        }
+        // corrupt records are reported, whether packed or not
+        for (long packed : new long[]{0, 0x1111111111111111L, 0x100000000000L | testBoard04.getPackedTiles()}) {
+            int N = packed == 0x1111111111111111L ? 4 : 3;
+            assert corrupt(ByteBuffer.allocate(18).putInt(BinaryBoardWriter.MAGIC).putShort((short) N).putLong(packed)
+                    .putInt(-1));
+        }
+        assert corrupt(ByteBuffer.allocate(18).putInt(BinaryBoardWriter.MAGIC).putShort((short) 3)
+                .putLong(testBoard04.getPackedTiles()).putInt(Integer.MAX_VALUE));
+    }
+
+    // does BinaryBoardReader report the record in buffer as corrupt?
+    private static boolean corrupt(ByteBuffer buffer) {
+        try (BinaryBoardReader reader = new BinaryBoardReader(
+                Channels.newChannel(new ByteArrayInputStream(buffer.array())))) {
+            reader.next();
+            return false;
+        } catch (IOException e) {
+            return e.getMessage().startsWith("Board 1");
+        }
+    }
+
+    @Test
+    public void boardGenerator() throws IOException {
+        BoardGenerator generator = new BoardGenerator(42);
+
+        // uniform boards are solvable, and all 12 solvable 2x2 boards come up about equally often
+        Map<Board, Integer> seen = new HashMap<Board, Integer>();
+        for (int i = 0; i < 1200; i++)
+            seen.merge(generator.uniform(2), 1, Integer::sum);
+        assert seen.size() == 12;
+        for (Map.Entry<Board, Integer> entry : seen.entrySet())
+            assert entry.getKey().isSolvable() && entry.getValue() > 50 && entry.getValue() < 150;
+        for (int N = 3; N <= 12; N++)
+            assert generator.uniform(N).isSolvable();
+
+        // a random walk is solved in at most as many moves, of the same parity
+        for (int i = 0; i < 10; i++) {
+            Board board = generator.walk(3, 20);
+            assert board.manhattan() <= 20;
+            Solver solver = new Solver(board, PriorityFunc.MANHATTAN);
+            int optimal = solver.solution().size() - 1;
+            assert optimal <= 20 && optimal % 2 == 0;
+            assert BoardGenerator.describe(board, 20, solver).equals(
+                    "# manhattan=" + board.manhattan() + " walk=20 optimal=" + optimal);
+        }
+        assert generator.walk(100, 1000).isSolvable();
 
+        // the description goes along with the board through BoardReader
+        Board board = generator.walk(4, 30);
+        StringWriter text = new StringWriter();
+        try (PrintWriter out = new PrintWriter(text)) {
+            BoardGenerator.print(out, BoardGenerator.describe(board, 30, null), board);
+            BoardGenerator.print(out, BoardGenerator.describe(board, -1, null), board);
+        }
+        BoardReader reader = new BoardReader(new ByteArrayInputStream(text.toString().getBytes()));
+        assert reader.next().equals(board) && reader.getComment().equals("manhattan=" + board.manhattan() + " walk=30");
+        assert reader.next().equals(board) && reader.getComment().equals("manhattan=" + board.manhattan());
+        assert reader.next() == null;
     }
 }
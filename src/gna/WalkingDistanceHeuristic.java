@@ -0,0 +1,144 @@
+package gna;
+
+import java.util.*;
+
+/**
+ * Walking distance: vertical moves only change which row every tile is in, so the number of vertical moves is at
+ * least the number of moves needed to sort the tiles into their goal rows when a tile may only swap rows with the
+ * empty tile and only its goal row matters. The same holds for horizontal moves and columns, and the sum of both
+ * is a lower bound that dominates Manhattan distance.
+ * <p>
+ * A row pattern counts, for every row, how many tiles of each goal row it holds, together with the row of the empty
+ * tile. All patterns reachable from the goal and their distances are found with a breadth-first search, and the
+ * transitions between patterns are stored so a move updates the state with a single table lookup. Columns use the
+ * same tables, since the goal board is symmetric under transposition.
+ */
+public class WalkingDistanceHeuristic implements Heuristic {
+
+    private static final int MAX_SIZE = 4;
+
+    private final int N;
+    private final int patternCount;
+    private final byte[] distances;            // distance from the goal pattern per pattern
+    private final int[] transitions;           // [pattern][empty tile up/down][goal line of the tile] -> pattern
+    private final Map<Long, Integer> indices;  // encoded pattern -> pattern
+
+    public WalkingDistanceHeuristic(int N) {
+        if (N < 2 || N > MAX_SIZE)
+            throw new IllegalArgumentException("Walking distance is supported for boards up to " + MAX_SIZE + "x" + MAX_SIZE);
+        this.N = N;
+        indices = new HashMap<>();
+        List<Long> patterns = new ArrayList<>();
+        List<Integer> distanceList = new ArrayList<>();
+        List<int[]> transitionList = new ArrayList<>();
+
+        int[][] counts = new int[N][N];
+        for (int r = 0; r < N; r++)
+            counts[r][r] = r == N - 1 ? N - 1 : N;
+        long goal = encode(counts, N - 1);
+        indices.put(goal, 0);
+        patterns.add(goal);
+        distanceList.add(0);
+
+        for (int index = 0; index < patterns.size(); index++) {
+            int empty = decode(patterns.get(index), counts);
+            int[] next = new int[2 * N];
+            Arrays.fill(next, -1);
+            for (int direction = 0; direction < 2; direction++) {
+                int row = direction == 0 ? empty - 1 : empty + 1;
+                if (row < 0 || row >= N)
+                    continue;
+                for (int g = 0; g < N; g++) {
+                    if (counts[row][g] == 0)
+                        continue;
+                    counts[row][g]--;
+                    counts[empty][g]++;
+                    long pattern = encode(counts, row);
+                    counts[row][g]++;
+                    counts[empty][g]--;
+                    Integer known = indices.get(pattern);
+                    if (known == null) {
+                        known = patterns.size();
+                        indices.put(pattern, known);
+                        patterns.add(pattern);
+                        distanceList.add(distanceList.get(index) + 1);
+                    }
+                    next[direction * N + g] = known;
+                }
+            }
+            transitionList.add(next);
+        }
+
+        patternCount = patterns.size();
+        distances = new byte[patternCount];
+        transitions = new int[patternCount * 2 * N];
+        for (int index = 0; index < patternCount; index++) {
+            distances[index] = (byte) (int) distanceList.get(index);
+            System.arraycopy(transitionList.get(index), 0, transitions, index * 2 * N, 2 * N);
+        }
+    }
+
+    public int evaluate(BoardView board) {
+        checkSize(board);
+        int[][] rowCounts = new int[N][N];
+        int[][] columnCounts = new int[N][N];
+        for (int i = 0; i < N * N; i++) {
+            int value = board.getTile(i);
+            if (value == 0)
+                continue;
+            rowCounts[i / N][(value - 1) / N]++;
+            columnCounts[i % N][(value - 1) % N]++;
+        }
+        int zero = board.getZeroIndex();
+        int rows = indices.get(encode(rowCounts, zero / N));
+        int columns = indices.get(encode(columnCounts, zero % N));
+        return rows * patternCount + columns;
+    }
+
+    public int update(BoardView board, int state, int tile, int from, int to) {
+        int rows = state / patternCount;
+        int columns = state % patternCount;
+        if (from / N != to / N) {
+            // vertical move: the empty tile went from row to / N to row from / N
+            int direction = from / N < to / N ? 0 : 1;
+            rows = transitions[(rows * 2 + direction) * N + (tile - 1) / N];
+        } else {
+            int direction = from % N < to % N ? 0 : 1;
+            columns = transitions[(columns * 2 + direction) * N + (tile - 1) % N];
+        }
+        return rows * patternCount + columns;
+    }
+
+    @Override
+    public int value(int state) {
+        return distances[state / patternCount] + distances[state % patternCount];
+    }
+
+    private void checkSize(BoardView board) {
+        if (board.getSize() != N)
+            throw new IllegalArgumentException("Walking distance tables are for " + N + "x" + N + " boards");
+    }
+
+    // counts as digits in base N + 1, followed by the line of the empty tile
+    private long encode(int[][] counts, int empty) {
+        long pattern = 0;
+        for (int r = 0; r < N; r++) {
+            for (int g = 0; g < N; g++)
+                pattern = pattern * (N + 1) + counts[r][g];
+        }
+        return pattern * N + empty;
+    }
+
+    // inverse of encode(): fills counts and returns the line of the empty tile
+    private int decode(long pattern, int[][] counts) {
+        int empty = (int) (pattern % N);
+        pattern /= N;
+        for (int r = N - 1; r >= 0; r--) {
+            for (int g = N - 1; g >= 0; g--) {
+                counts[r][g] = (int) (pattern % (N + 1));
+                pattern /= N + 1;
+            }
+        }
+        return empty;
+    }
+}